@@ -3,23 +3,32 @@
   * loop for command entry and processing. It also parses all commandline args,
   * with the following being options:
   * + in <file>     : Preload command options from a text file
+  * + pool <n>      : Size of the connection pool (1 by default)
+  * + trie          : Load customers' names into memory at startup, for
+  *                   faster lookups by partial name (see dbase.Customers)
   *
   * Author: Matthew Morgan
   * Date: 7 November 2018
   */
 
 import java.util.Scanner;
+import java.sql.SQLException;
 
 import dbase.Conn;
+import dbase.Lease;
 import cmd.Command;
 
 public class Main {
   // con is the connection instance used during execution
   // scan is the scanner used globally
   // com is the command instance used for fetching main commands from the user
+  // pool is the number of connections the connection pool may hold
+  // trie is set if customers' names are loaded into memory
   static Conn con = null;
   static Scanner scan = null;
   static Command com = null;
+  static int pool = 1;
+  static boolean trie = false;
 
   public static void main(String[] args) {
     boolean loop = true;
@@ -29,6 +38,8 @@ public class Main {
 
       // Setup connection, com, and scanner
       con = new Conn("DBMSTermProject", "", "postgres");
+      con.setPoolSize(pool);
+      con.setWarmNames(trie);
       con.connect();
       scan = new Scanner(System.in);
       com = new Command() { public void execute() {} };
@@ -41,14 +52,14 @@ public class Main {
       while(loop) {
         String cmd = com.prompt("CMD");
 
-        if (Command.isCommand(cmd))
-          Command.getCommand(cmd).setCon(con).setScanner(scan).execute();
+        if (Command.isCommand(cmd)) { runCommand(cmd); }
         else if (Command.isReturn(cmd)) { loop = false; }
         else
           System.out.println("Command doesn't exist; use 'help' for a list");
       }
 
-      System.out.println("\nDatabase connection terminated");
+      System.out.println("\nConnection pool: "+con.getStats());
+      System.out.println("Database connection terminated");
 
       con.disconnect();
       scan.close();
@@ -58,6 +69,24 @@ public class Main {
     }
   }
 
+  /** runCommand(cmd) runs a command on one connection, leased for the whole
+    * command. The lease opens no transaction: each unit of work the command
+    * runs (through Conn.begin or Conn.transact) commits on its own, but all
+    * of them, and the statements between, share the leased connection.
+    *
+    * @param cmd The command to run */
+
+  // The lease is only held, never referenced, while the command runs
+  @SuppressWarnings("try")
+  private static void runCommand(String cmd) {
+    try (Lease l = con.lease()) {
+      Command.getCommand(cmd).setCon(con).setScanner(scan).execute();
+    }
+    catch(SQLException e) {
+      System.out.println("Connection error: "+e.getMessage());
+    }
+  }
+
   /** argumentCheck(args) checks the arguments provided to the program, and
     * executes all necessary actions based on those arguments.
     *
@@ -72,6 +101,16 @@ public class Main {
             Command.open(args[i+1]);
             i++;
             break;
+          // Connection pool size
+          case "-pool": case "pool":
+            pool = Integer.parseInt(args[i+1]);
+            if (pool < 1) { throw new Exception("Pool size must be positive"); }
+            i++;
+            break;
+          // In-memory customer name index
+          case "-trie": case "trie":
+            trie = true;
+            break;
           // Unrecognized command
           default:
             throw new Exception("Unrecognized cmd argument");
@@ -9,23 +9,31 @@
 
 package cmd;
 
-import java.util.Scanner;
 import java.util.ArrayList;
-import java.util.Random;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.time.LocalDate;
 import java.sql.SQLException;
-import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 
 import dbase.Conn;
-import dbase.CID;
 import dbase.Relations;
+import dbase.AccountCache;
 import cmd.acct.*;
 
 // Make a toggle so that only open accounts will be shown on a seek
-// Make get have subcommands for getting account info, transactions, cards
+// Make get have subcommands for getting account info and cards
 
 public class CmdAccount extends Command {
+  // ACCT_PROPS are the properties entered for a new account
+  private static final String[][] ACCT_PROPS = new String[][] {
+    Relations.TBL_ACCOUNT[1], Relations.TBL_ACCOUNT[4], Relations.TBL_ACCOUNT[5],
+    Relations.TBL_ACCOUNT[6], Relations.TBL_ACCOUNT[7]
+  };
+
   public void execute() {
     boolean loop = hasScanner();
 
@@ -41,6 +49,8 @@ public class CmdAccount extends Command {
         case "get": subGet(); break;
         case "mod": (new SubModify()).setCon(con).setScanner(scan).execute(); break;
         case "seek": subSeek(); break;
+        case "post": subPost(); break;
+        case "hist": (new SubHistory()).setCon(con).setScanner(scan).execute(); break;
         case "help": subHelp(); break;
         default:
           if (Command.isReturn(cmd.toLowerCase()))
@@ -61,6 +71,8 @@ public class CmdAccount extends Command {
       "seek       Seek accounts owned by a customer\n"+
       "get        Get information about an account\n"+
       "mod        Modify an account\n"+
+      "post       Post a list of credits and debits in bulk\n"+
+      "hist       Page through an account's transactions\n"+
       "help       Show this list of subcommands\n"+
       "ret        Return to the main menu"
     );
@@ -72,9 +84,10 @@ public class CmdAccount extends Command {
     *  <li>Ask if the customer is a new customer
     *  <ul>
     *   <li>If the customer is new, execute functionality to make a new customer
-    *   <li>If the customer isn't new, ask for the name to associate with
+    *   <li>If the customer isn't new, ask for the CID or name (or part of
+    *       one) to associate with (see Customers)
     *   <ul>
-    *    <li>If multiple customers share the name, then prompt for specific ID
+    *    <li>If multiple customers match, then prompt for specific ID
     *   </ul>
     *  </ul>
     *  <li>Enter properties for the account
@@ -87,116 +100,88 @@ public class CmdAccount extends Command {
       // Ask if the customer is new
       System.out.println("Is this account for a new customer? (y/n)");
       String isNew, cid = "";
+      Object[] cust = null;
       do { isNew = prompt("ACCT > NEW").toLowerCase(); }
       while(!isYes(isNew) && !isNo(isNew));
 
-      // If the customer is new, generate a new customer entry in the DB
-      // If the customer isn't new, get a customer ID
-      if (isYes(isNew))
-        cid = getCustomer(scan, con);
+      // If the customer is new, get their properties (they're inserted along
+      // with the account); if the customer isn't new, get a customer ID
+      if (isYes(isNew)) {
+        System.out.println("Enter the new customer's information...\n");
+        cust = CmdCustomer.promptNew();
+        System.out.println();
+      }
       else {
-        ArrayList<String> dat = new ArrayList<>();
-        String[] name;
-        int res = 0;
-
-        // Get the name of the customer
-        System.out.println("Who is this account for? (Type a first, last name)");
+        // Get the customer by CID or name, picking one if several match
+        System.out.println("Who is this account for? (CID, or a full or partial name)");
         do { cid = prompt("ACCT > NEW > CID"); }
-        while(!cid.contains(" "));
-        name = cid.replace("'", "''").trim().split(" ");
-
-        // Fetch results from the database
-        ps = con.genQuery(
-          "SELECT \"CID\", \"Con_Phone\", \"SSN\" FROM \"Customer\" WHERE "+
-          "\"Fname\" = '"+name[0]+"' AND \"Lname\" = '"+name[1]+"'"
-        );
-        rs = ps.executeQuery();
-        while(rs.next()) {
-          res++;
-          cid = rs.getString("CID");
-          dat.add(String.format("(%4s) %s %s", rs.getString("CID"),
-            rs.getString("Con_Phone"), rs.getString("SSN")));
-        }
-        rs.close();
-        ps.close();
-
-        // Show results and prompt if there is more than one for a CID
-        if (res == 0)
-          throw new Exception("No customer exists with the given name");
-        else if (res > 1) {
-          System.out.println("Which of these customers is it? (CID, Phone, SSN)");
-          for(String cst : dat) { System.out.println(cst); }
-          cid = prompt("ACCT > NEW > CID");
-        }
+        while(cid.trim().isEmpty() && hasScanner());
+        cid = Integer.toString(pickCustomer("ACCT > NEW > CID", cid));
       }
 
       // The user must enter these properties: Account type, balance, int rate,
       // compound rate, and monthly fee
-      // (row will be 1 if the update is successful, or 0 if unsuccessful)
-      String[][] prop = new String[][] {Relations.TBL_ACCOUNT[1], Relations.TBL_ACCOUNT[4],
-        Relations.TBL_ACCOUNT[5], Relations.TBL_ACCOUNT[6], Relations.TBL_ACCOUNT[7]},
-        fields = Relations.getProps("ACCT > NEW", prop, false);
-      String que, aid;
-      int row;
-
-      // Generate query and run it
-      que = "INSERT INTO \"Account\"(\"AID\",\"Date_Open\","+
-        Relations.getInsert(prop).substring(1)+" VALUES ('000000000000','"+
-        LocalDate.now().toString()+"',";
-      for(String[] field : fields) {
-        switch(field[0]) {
-          case "Int_Comp":
-            if (field[1].equals(""))
-              que += "'NONE',";
-            else
-              que += "'"+field[1]+"',";
-            break;
-          default:
-            que += "'"+field[1]+"',";
-        }
+      String[][] fields = Relations.getProps("ACCT > NEW", ACCT_PROPS, false);
+      Object[] acct = new Object[fields.length];
+      for(int i=0; i<fields.length; i++) {
+        if (fields[i][0].equals("Int_Comp") && fields[i][1].equals(""))
+          acct[i] = "NONE";
+        else
+          acct[i] = fields[i][1];
       }
 
-      ps = con.genQuery(que.substring(0,que.length()-1)+")");
-      row = ps.executeUpdate();
-      ps.close();
-
-      // If the account was created with temporary AID '000000000000', make a new
-      // AID and insert into Account_Owner the cid, aid pair
-      if (row > 0) {
-        Random r = new Random();
-        ps = con.genQuery("SELECT \"AID\" FROM \"Account\" WHERE \"AID\" = ?");
-        do {
-          aid = "";
-          for(int i=0; i<12; i++) aid += r.nextInt(10);
-          ps.setLong(1, Long.parseLong(aid));
-          rs = ps.executeQuery();
-        }
-        while(rs.next());
-        rs.close();
-        ps.close();
-
-        ps = con.genQuery(
-          "UPDATE \"Account\" SET \"AID\" = "+aid+" WHERE \"AID\"='000000000000'"
-        );
-        ps.executeUpdate();
-        ps.close();
-
-        ps = con.genQuery(
-          "INSERT INTO \"Account_Owner\"(\"AID\",\"CID\") VALUES ("+aid+","+cid+")"
-        );
-        ps.executeUpdate();
-        ps.close();
-
-        System.out.println("Account successfully created, AID: "+aid);
-      }
-      else
-        throw new Exception("Account could not be created");
+      long aid = open(con, cust, cust == null ? Integer.parseInt(cid.trim()) : 0, acct);
+      System.out.println("Account successfully created, AID: "+String.format("%012d", aid));
     }
     catch(Exception e) {
       System.out.println("Error: "+e.getMessage());
     }
   }
 
+  /** open(c, cust, cid, acct) opens an account in one transaction: it inserts
+    * the customer (if cust isn't null), the account, and its Account_Owner
+    * row, one statement each (as a unit of work, see Conn.transact). The AID
+    * is allocated up front (see AidAllocator) and the new CID comes back from
+    * the insert, so nothing is looked up. If the AID allocated belongs to an
+    * existing account, another is allocated.
+    *
+    * @param c The connection to open the account with
+    * @param cust The new customer's properties (see CmdCustomer.promptNew),
+    *   or null if the account is for an existing customer
+    * @param cid The existing customer's CID (if cust is null)
+    * @param acct The values of the account's ACCT_PROPS
+    * @return The new account's AID */
+
+  public static long open(Conn c, Object[] cust, int cid, Object[] acct) throws SQLException {
+    String que = "INSERT INTO \"Account\"(\"AID\",\"Date_Open\","+
+      Relations.getInsert(ACCT_PROPS).substring(1)+" VALUES (?,?";
+    for(int i=0; i<acct.length; i++) { que += ",?"; }
+    que += ") ON CONFLICT (\"AID\") DO NOTHING RETURNING \"AID\"";
+
+    Object[] val = new Object[acct.length + 2];
+    System.arraycopy(acct, 0, val, 2, acct.length);
+    val[1] = LocalDate.now();
+
+    final String ins = que;
+    return c.transact(w -> {
+      int owner = cust != null ? CmdCustomer.insert(c, cust) : cid;
+
+      long aid = -1;
+      while(aid < 0) {
+        val[0] = c.nextAID();
+        ResultSet r = w.query(ins, val);
+        if (r.next()) { aid = r.getLong("AID"); }
+        r.close();
+      }
+
+      w.update("INSERT INTO \"Account_Owner\"(\"AID\",\"CID\") VALUES (?,?)", aid, owner);
+
+      final long a = aid;
+      w.afterCommit(() -> c.accounts().evictOwner(a, owner));
+      return aid;
+    });
+  }
+
   /** subGet() allows the user to get information about an account, following
     * the following procedure:
     *
@@ -210,66 +195,46 @@ public class CmdAccount extends Command {
     *       owners listed for an account
     *   <li>Most recent card number, PIN, CSC, expiration date (for CHK accts)
     *  </ul>
-    * </ul> */
+    * </ul>
+    *
+    * The accounts, cards, and owners come from the cache (see AccountCache),
+    * which loads whatever it's missing for all of the accounts at once, and
+    * the rows are shown in the order the AIDs were typed. */
 
   private void subGet() {
     try {
       // Get the AIDs to fetch info for
       System.out.println("Type a comma-delimited list of accounts to get data for");
       String[] aid = prompt("ACCT > AID").split(",");
+      Long[] ids = new Long[aid.length];
+      for(int i=0; i<aid.length; i++) {
+        aid[i] = aid[i].trim();
+        ids[i] = Long.parseLong(aid[i]);
+      }
 
-      // Fetch information for each AID individually
-      for(String a : aid) {
-        String out = "";
-        int res = 0;
-        a = a.trim();
-
-        // AID, Type, Open/Close, Balance
-        ps = con.genQuery(
-          "SELECT \"AID\", \"Type\", \"Date_Open\", \"Date_Close\", \"Balance\""+
-          " FROM \"Account\" WHERE \"AID\" = "+a
-        );
-        rs = ps.executeQuery();
-        while(rs.next()) { res++; out = "+ "+getAccount(); }
-        rs.close();
-        ps.close();
-
-        if (res == 0) {
-          System.out.println("!! Account "+a+" doesn't exist");
-          continue;
-        }
+      // Fetch information for all of the AIDs at once
+      List<Long> keys = Arrays.asList(ids);
+      Map<Long,AccountCache.Summary> sum = con.accounts().summaries(keys);
+      Map<Long,List<AccountCache.Card>> card = con.accounts().cards(keys);
+      Map<Long,List<AccountCache.Owner>> own = con.accounts().owners(keys);
+
+      for(int i=0; i<aid.length; i++) {
+        AccountCache.Summary a = sum.get(ids[i]);
+        if (a == null) { System.out.println("!! Account "+aid[i]+" doesn't exist"); continue; }
+
+        String acct = "+ "+getAccount(a);
 
         // Recent card Num, PIN, CSC, Expiry
-        if (!out.contains("SAV")) {
-          ps = con.genQuery(
-            "SELECT \"Number\", \"PIN\", \"Sec_Code\", \"Exp_Date\" FROM \"Card\""+
-            " WHERE \"AID\" = "+a+" ORDER BY \"Exp_Date\" DESC"
-          );
-          rs = ps.executeQuery();
-          rs.next();
-          out += "\n  CRD: "+getCard();
-          //while(rs.next()) { out += "\n  REC CRD: "+getCard(); }
-          rs.close();
-          ps.close();
-        }
-        
-        // Owning customer CID, Name, and Phone
-        out += "\n  OWN:";
-        ps = con.genQuery(
-          "SELECT \"CID\", \"Fname\", \"Lname\" FROM \"Customer\" WHERE "+
-          "\"CID\" IN (SELECT \"CID\" FROM \"Account_Owner\" WHERE \"AID\""+
-          "="+a+")"
-        );
-        rs = ps.executeQuery();
-        while(rs.next()) {
-          out += "\n    "+String.format(
-            "(%4d) %s %s", rs.getInt("CID"), rs.getString("Fname"), rs.getString("Lname")
-          );
-        }
-        rs.close();
-        ps.close();
+        List<AccountCache.Card> c = card.get(ids[i]);
+        if (!a.type.equals("SAV") && !c.isEmpty())
+          acct += "\n  CRD: "+getCard(c.get(0));
+
+        // Owning customer CID, Name
+        acct += "\n  OWN:";
+        for(AccountCache.Owner o : own.get(ids[i]))
+          acct += "\n    "+String.format("(%4d) %s %s", o.cid, o.fname, o.lname);
 
-        System.out.println(out);
+        System.out.println(acct);
       }
     }
     catch(Exception e) {
@@ -277,15 +242,14 @@ public class CmdAccount extends Command {
     }
   }
 
-  /** getCard() reads a card's information from the ResultSet property of this
-    * command. It modifies the expiration date by 4 years since the dates stored
-    * are the dates the cards were assigned to the account. It returns a String
-    * with basic information about the card. */
+  /** getCard(c) formats a card's information. It modifies the expiration date
+    * by 4 years since the dates stored are the dates the cards were assigned
+    * to the account. It returns a String with basic information about the
+    * card. */
 
-  private String getCard() throws SQLException {
+  private String getCard(AccountCache.Card c) {
     return String.format(
-      "%s, PIN %s, SEC %s, expires %s", rs.getString("Number"), rs.getString("PIN"),
-      rs.getString("Sec_Code"), rs.getDate("Exp_Date").toLocalDate().plusYears(4).toString()
+      "%s, PIN %s, SEC %s, expires %s", c.number, c.pin, c.sec, c.exp.plusYears(4).toString()
     );
   }
 
@@ -293,7 +257,7 @@ public class CmdAccount extends Command {
     * owned by a customer. It follows the below procedure:
     * <ul>
     *  <li>Get the customer ID that the user wishes to see account info for
-    *      (which may be either numeric or a first, last name pair)
+    *      (which may be numeric, or a full or partial name)
     *  <li>Prompt for clarification if multiple customers were returned
     *  <li>Show acount number, open/close date, type, and balance
     * </ul>
@@ -306,78 +270,23 @@ public class CmdAccount extends Command {
 
   private void subSeek() {
     try {
-      CID cid = new CID();
-      String id = "", tmp = "";
-
-      // Get the customer's name or cid the user wishes to see info for
+      // Get the customer the user wishes to see info for, by CID or name
       System.out.println("What customer do you wish to see an account for?");
-      if (!cid.add(prompt("ACCT > CID")))
-        throw new Exception("Customer ID entered was invalid");
-
-      // Get the ID of the customer and test if that customer exists
-      if (cid.cntStr() == 1) {
-        int results = 0;
-
-        ps = con.genQuery(
-          "SELECT \"CID\", \"SSN\", \"DOB\", \"Con_Phone\" FROM \"Customer\" WHERE "+
-          "(\"Fname\",\"Lname\") IN "+cid.getInStr()
-        );
-
-        rs = ps.executeQuery();
-        while(rs.next()) {
-          results++;
-          tmp +=
-            String.format("(%4s) %s %s %s\n", rs.getString("CID"),
-            rs.getString("SSN"), rs.getString("DOB"), rs.getString("Con_Phone"));
-          id = rs.getString("CID");
-        }
-        rs.close();
-        ps.close();
-
-        // If multiple customers with the name exist, prompt for clarification
-        if (results > 1) {
-          System.out.println("Which of these customers (ID, SSN, DOB, Phone) is it?");
-          System.out.print(tmp);
-          id = prompt("ACCT > CID");
-        }
-        else if (results == 0)
-          throw new Exception("No customer with that name exists");
-      }
-      else {
-        // Remove '()' from the ID
-        id = cid.getInNum();
-        id = id.substring(1, id.length()-1);
+      int id = pickCustomer("ACCT > CID", prompt("ACCT > CID"));
+
+      // Get information for the account(s) the customer owns
+      List<Long> aids = con.accounts().accounts(id);
+      Map<Long,AccountCache.Summary> sum = con.accounts().summaries(aids);
+      int accts = 0;
+      for(Long a : aids) {
+        if (!sum.containsKey(a)) { continue; }
+        if (accts++ == 0)
+          System.out.println("These accounts are associated with the customer:");
+        System.out.println("+ "+getAccount(sum.get(a)));
       }
 
-      // Get all account IDs for the customer
-      ArrayList<String> aid = new ArrayList<>();
-      ps = con.genQuery("SELECT \"AID\" FROM \"Account_Owner\" WHERE \"CID\"="+id);
-      rs = ps.executeQuery();
-      while(rs.next())
-        aid.add(rs.getString("AID"));
-      rs.close();
-      ps.close();
-
-      if (aid.size() == 0)
+      if (accts == 0)
         throw new Exception("The customer owns no accounts presently");
-      else {
-        tmp = "(";
-        for(String a : aid) { tmp += a + ", "; }
-        tmp = tmp.substring(0,tmp.length()-2)+")";
-      }
-      
-      // Get information for the account(s)
-      ps = con.genQuery(
-        "SELECT \"AID\", \"Date_Open\", \"Date_Close\", \"Balance\", \"Type\" FROM "+
-        "\"Account\" WHERE \"AID\" IN "+tmp
-      );
-      rs = ps.executeQuery();
-      System.out.println("These accounts are associated with the customer:");
-      while(rs.next()) {
-        System.out.println("+ "+getAccount());
-      }
-      rs.close();
-      ps.close();
     }
     catch(SQLException e) {
       System.out.println("Query error: "+e.getMessage());
@@ -387,49 +296,84 @@ public class CmdAccount extends Command {
     }
   }
 
-  /** getAccount() gets basic account information from the ResultSet object of
-    * this command, and returns it in a simplistic, String format. */
+  /** subPost() posts a list of credits and debits through the posting queue
+    * (see PostingQueue), following this procedure:
+    *
+    * <ul>
+    *  <li>Read postings one per line, as 'AID credit|debit amount [desc]',
+    *      until a blank line; each is submitted as soon as it's read, so the
+    *      queue commits them in groups while the rest are still coming in
+    *  <li>Wait for every posting to commit, and show the result of each that
+    *      failed along with the number posted
+    * </ul>
+    *
+    * Lines that can't be read are skipped (and reported); postings that are
+    * refused, like a debit the balance can't cover, don't stop the rest. The
+    * list can come from an input file as well as the keyboard. */
+
+  private void subPost() {
+    ArrayList<String> lines = new ArrayList<>();
+    ArrayList<CompletableFuture<Double>> posts = new ArrayList<>();
+    int bad = 0;
 
-  public String getAccount() throws SQLException {
-    return String.format(
-      "%012d, %s: opened %s, closed %10s | Balance: $%.2f",
-      rs.getLong("AID"), rs.getString("Type"), rs.getString("Date_Open"),
-      rs.getString("Date_Close"), rs.getDouble("Balance")
+    System.out.println(
+      "Type one posting per line as 'AID credit|debit amount [description]'.\n"+
+      "Type a blank line to finish."
+    );
+
+    long t0 = System.nanoTime();
+    try {
+      for(String ln; !(ln = prompt("ACCT > POST", false).trim()).isEmpty(); ) {
+        String[] f = ln.split(" +", 4);
+
+        try {
+          if (f.length < 3) { throw new Exception("expected AID, type, and amount"); }
+
+          long aid = Long.parseLong(f[0]);
+          boolean deb = f[1].equalsIgnoreCase("debit");
+          if (!deb && !f[1].equalsIgnoreCase("credit"))
+            throw new Exception("type must be credit or debit");
+          double amt = Double.parseDouble(f[2]);
+          String desc = f.length > 3 ? f[3] : (deb ? "BULK DEBIT" : "BULK CREDIT");
+
+          posts.add(con.postings().submit(aid, amt, deb, "bank", "bank", desc));
+          lines.add(ln);
+        }
+        catch(SQLException e) { throw e; }
+        catch(Exception e) {
+          bad++;
+          System.out.println("Skipped '"+ln+"': "+e.getMessage());
+        }
+      }
+    }
+    catch(SQLException e) {
+      System.out.println("Query error: "+e.getMessage());
+    }
+
+    // Wait for every posting submitted, and report the ones that failed
+    int ok = 0;
+    for(int i=0; i<posts.size(); i++)
+      try {
+        posts.get(i).join();
+        ok++;
+      }
+      catch(CompletionException e) {
+        System.out.println("Failed '"+lines.get(i)+"': "+e.getCause().getMessage());
+      }
+    double secs = (System.nanoTime() - t0) / 1e9;
+
+    System.out.printf(
+      "%d posted, %d failed, %d skipped in %.2fs\n", ok, posts.size() - ok, bad, secs
     );
   }
 
-  /** getCustomer(s,c) generates a customer via user input, and then returns the
-    * new user's CID as a string.
-    *
-    * @param s A scanner to use for input
-    * @param c A connection to a database for customer data insertion
-    * @return The new customer's CID
-   */
-
-  public static String getCustomer(Scanner s, Conn c) throws SQLException, Exception {
-    PreparedStatement ps;
-    ResultSet rs;
-    String cid;
-
-    // Execute CmdCustomer's function to generate a new customer
-    System.out.println("Executing customer addition...\n");
-    CmdCustomer cust = new CmdCustomer();
-    cust.setCon(c);
-    cust.setScanner(s);
-
-    if (!cust.subNewPub())
-      throw new Exception("Customer generation failed");
-    else
-      System.out.println();
-
-    // Get the new customer's CID
-    ps = c.genQuery("SELECT COUNT (*) AS \"NEWID\" FROM \"Customer\"");
-    rs = ps.executeQuery();
-    rs.next();
-    cid = rs.getString("NEWID");
-    rs.close();
-    ps.close();
-
-    return cid;
+  /** getAccount(a) returns basic account information from an account's
+    * summary in a simplistic, String format. */
+
+  public String getAccount(AccountCache.Summary a) {
+    return String.format(
+      "%012d, %s: opened %s, closed %10s | Balance: $%.2f",
+      a.aid, a.type, a.open, a.close, a.balance
+    );
   }
-}
\ No newline at end of file
+}
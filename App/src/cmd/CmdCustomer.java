@@ -11,10 +11,12 @@ package cmd;
 
 import java.util.Scanner;
 import java.util.ArrayList;
-import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 
 import dbase.CID;
+import dbase.Conn;
+import dbase.Customers;
 import dbase.Relations;
 
 public class CmdCustomer extends Command {
@@ -96,7 +98,7 @@ public class CmdCustomer extends Command {
     );
     props();
 
-    String[] keys = prompt("CUST > PROP").split(" "), in;
+    String[] keys = prompt("CUST > PROP").split(" ");
 
     if (!hasKeys(keys))
       System.out.println("Properties list not accepted");
@@ -104,23 +106,14 @@ public class CmdCustomer extends Command {
       // Attempt to parse all of the CIDs provided and generate a query
       try {
         CID cid = new CID();
-        String que = "";
         int results = 0;
 
         if (!cid.addAll(prompt("CUST > CIDs").split(","))) { throw new Exception(); }
-        in = cid.getIn();
         keys = getProps(keys).toArray(new String[0]);
 
-        // Query building
-        que = "SELECT \"CID\", \"Lname\", "+buildSelect(keys)+" FROM \"Customer\" WHERE ";
-        if (!in[0].equals("")) { que += "\"CID\" IN "+in[0]; }
-        if (!in[1].equals("")) {
-          if (!in[0].equals("")) { que += " OR "; }
-          que += "(\"Fname\",\"Lname\") IN "+in[1];
-        }
-
-        ps = con.genQuery(que);
-        rs = ps.executeQuery();
+        // The IDs and names are bound as arrays (see CID.WHERE), so the query
+        // is the same however many are given, and whatever properties are
+        rs = con.query("SELECT * FROM \"Customer\" WHERE "+CID.WHERE, cid.getArgs());
 
         // Generate the result string
         while(rs.next()) {
@@ -164,7 +157,6 @@ public class CmdCustomer extends Command {
           System.out.println("There were no results");
         
         rs.close();
-        ps.close();
       }
       catch(SQLException e) {
         System.out.println("Query couldn't be generated");
@@ -180,9 +172,10 @@ public class CmdCustomer extends Command {
     * user to modify a single customer's information per usage. It follows this
     * given procedure:
     * <ul>
-    *  <li>Get the name or numerical ID of the customer to be modified
+    *  <li>Get the name (or part of one) or numerical ID of the customer to be
+    *      modified, and resolve it (see Customers)
     *  <li>If there is no customer with the name/ID, reject input
-    *  <li>If there are multiple customers with the given name:
+    *  <li>If there are multiple customers matching the name:
     *  <ul>
     *   <li>Ask which customer the user wants to modify
     *  </ul>
@@ -191,67 +184,41 @@ public class CmdCustomer extends Command {
     * </ul> */
 
   private void subMod() {
-    System.out.println("Type the CID or full name of the customer you wish to modify.");
+    System.out.println("Type the CID or name (or part of one) of the customer you wish to modify.");
     String cid = prompt("CUST > CID"), que = "SELECT * FROM \"Customer\" WHERE ";
-    ArrayList<String> res = new ArrayList<>();
 
     try {
-      // Build the query
-      if (cid.contains(" ")) {
-        String[] spl;
-        spl = cid.replace("'", "''").split(" ");
-        que += "\"Fname\" = '" + spl[0] + "' AND \"Lname\" = '" + spl[1] + "'";
-      }
-      else {
-        // Attempt an integer parse to catch if a word was given instead of CID
-        try {
-          que += "\"CID\" = " + Integer.parseInt(cid);
-        }
-        catch(Exception e) { throw new Exception("Invalid CID or name"); }
-      }
-
-      // Show results
-      ps = con.genQuery(que);
-      rs = ps.executeQuery();
-      while(rs.next()) {
-        System.out.println(getPerson());
-        res.add(rs.getString("CID"));
-      }
+      // Look the customer up by CID or name (see Customers), picking one if
+      // several match, and show them
+      int id = pickCustomer("CUST > CID", cid);
+      rs = con.query(que+"\"CID\" = ?", id);
+      if (rs.next()) { System.out.println(getPerson()); }
       rs.close();
-      ps.close();
-
-      // Show error if no results were found
-      // Set CID if only one result was found
-      // Prompt for CID if more than one was found
-      if (res.size() == 0)
-        throw new Exception("No customer with the identifying info exists");
-      else if (res.size() == 1)
-        cid = res.get(0);
-      else {
-        while(!res.contains((cid = prompt("CUST > CID")))) {
-          System.out.println("Type a CID from the list of shown CIDs");
-        }
-      }
+      cid = Integer.toString(id);
 
       // propFlag flags if at least one property was changed
       boolean propFlag = false;
       String[][] fields = Relations.getProps("CUST", Relations.TBL_CUSTOMER);
+      ArrayList<Object> val = new ArrayList<>();
       que = "UPDATE \"Customer\" SET ";
       for(String[] f : fields)
         if (!f[1].equals("")) {
           propFlag = true;
-          que += "\""+f[0]+"\" = '"+f[1].replaceAll("'","''")+"',";
+          que += "\""+f[0]+"\" = ?,";
+          val.add(f[1]);
         }
-      que = que.substring(0, que.length()-1) + " WHERE \"CID\" = " + cid;
+      que = que.substring(0, que.length()-1) + " WHERE \"CID\" = ?";
+      val.add(Integer.parseInt(cid.trim()));
 
       if (!propFlag) { throw new Exception("Operation aborted - no prop changes"); }
 
-      ps = con.genQuery(que);
-      if (ps.executeUpdate() == 1)
+      if (con.update(que, val.toArray()) == 1) {
+        con.accounts().evictCustomer(Integer.parseInt(cid.trim()));
+        con.customers().changed(Integer.parseInt(cid.trim()));
         System.out.println("Operation successful");
+      }
       else
         System.out.println("Operation unsuccessful");
-      ps.close();
     }
     catch(SQLException e) {
       System.out.println("Error during SQL handling");
@@ -284,40 +251,10 @@ public class CmdCustomer extends Command {
     *  <li>Generate a query and attempt to insert the customer
     * </ul> */
   
-  private void subNew() { subNewPub(); }
-
-  /** subNewPub() executes the new subcommand of customer, returning if the
-    * operation was successful or not.
-    *
-    * @return True if the customer was added, or false if not */
-
-  public boolean subNewPub() {
+  private void subNew() {
     try {
-      String[][] fields = Relations.getProps("CUST > NEW", Relations.TBL_CUSTOMER, false);
-      String que = "INSERT INTO \"Customer\" " +
-        Relations.getInsert(Relations.TBL_CUSTOMER) + " VALUES (";
-
-      for(String[] f : fields) {
-        switch(f[0]) {
-          case "Zip":
-            if (!f[1].equals("")) { que += Integer.parseInt(f[1]); }
-            else { que += "'null'"; }
-            break;
-          default:
-            if (!f[1].equals("")) { que += "'"+f[1].replaceAll("'","''")+"'"; }
-            else { que += "'null'"; }
-        }
-        que += ",";
-      }
-
-      que = que.substring(0,que.length()-1) + ")";
-
-      ps = con.genQuery(que);
-      if (ps.executeUpdate() == 1)
-        System.out.println("Customer inserted into database successfully");
-      ps.close();
-
-      return true;
+      int cid = insert(con, promptNew());
+      System.out.println("Customer inserted into database successfully (CID "+cid+")");
     }
     catch(Exception e) {
       // Zip wasn't an integer
@@ -325,6 +262,48 @@ public class CmdCustomer extends Command {
       // Misc error
       System.out.println("Input rejected: "+e.getMessage());
     }
-    return false;
   }
-}
\ No newline at end of file
+
+  /** promptNew() prompts the user for the properties of a new customer, and
+    * returns them as the values insert() takes. Blank properties are NULLs.
+    *
+    * @return The values of the customer's properties, in TBL_CUSTOMER order
+    * @throws NumberFormatException If the zip code isn't a number */
+
+  public static Object[] promptNew() {
+    String[][] fields = Relations.getProps("CUST > NEW", Relations.TBL_CUSTOMER, false);
+    Object[] val = new Object[fields.length];
+
+    for(int i=0; i<fields.length; i++) {
+      String f = fields[i][1];
+      if (f.equals("")) { val[i] = null; }
+      else if (fields[i][0].equals("Zip")) { val[i] = Integer.parseInt(f); }
+      else { val[i] = f; }
+    }
+    return val;
+  }
+
+  /** insert(c, val) inserts a customer with the property values given (see
+    * promptNew), and returns the CID the database numbered it with. Once the
+    * work it's part of commits, the customer is added to the name index.
+    *
+    * @param c The connection to insert the customer with
+    * @param val The values of the customer's properties
+    * @return The new customer's CID */
+
+  public static int insert(Conn c, Object[] val) throws SQLException {
+    String que = "INSERT INTO \"Customer\" " +
+      Relations.getInsert(Relations.TBL_CUSTOMER) + " VALUES (";
+    for(int i=0; i<val.length; i++) { que += (i == 0 ? "?" : ",?"); }
+
+    final String sql = que+") RETURNING "+Customers.COLS;
+    return c.transact(w -> {
+      ResultSet r = c.query(sql, val);
+      r.next();
+      Customers.Match m = new Customers.Match(r);
+      r.close();
+      w.afterCommit(() -> c.customers().remember(m));
+      return m.cid;
+    });
+  }
+}
@@ -9,6 +9,8 @@ public class CmdHelp extends Command {
       "account    Perform actions related to accounts\n"+
       "help       Displays this list of base commands\n"+
       "reset      DEBUG: Reset the state of the database\n"+
+      "stress     DEBUG: Stress test concurrent postings to accounts\n"+
+      "shard      Manage hot accounts with sharded balances\n"+
       "exit       Terminates the program's execution"
     );
   }
@@ -1,6 +1,8 @@
 /**
   * CmdReset is a simple command that allows the user to reset the state of the
-  * database, reloading the tables/types and data from SQL files.
+  * database, reloading the tables/types and data from SQL files. It can also
+  * set up the physical design (physical.sql) when resetting, or migrate an
+  * already loaded database into it.
   *
   * Author: Matthew Morgan
   * Date: 8 November 2018
@@ -14,6 +16,7 @@ import java.io.IOException;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.File;
+import java.util.ArrayList;
 
 import dbase.Conn;
 
@@ -22,36 +25,17 @@ public class CmdReset extends Command {
     try {
       // Require the user to confirm reset by typing keyword
       System.out.println(
-        "Type 'reset' to reset the database and reload data."
+        "Type 'reset' to reset the database and reload data, 'physical' to do\n"+
+        "so with the physical design (partitions and indexes, physical.sql), or\n"+
+        "'migrate' to move the loaded database into the physical design."
       );
 
       String sub = prompt("RES");
 
       switch(sub.toLowerCase()) {
-        case "reset":
-          System.out.println("Type creation script and data file paths.");
-
-          // Get the creation and data SQL script paths
-          String inque, indat;
-          BufferedReader r;
-          do { inque = prompt("RES > Creator"); } while (inque.equals(""));
-          do { indat = prompt("RES > DatFile"); } while (indat.equals(""));
-
-          if (!(new File(inque)).exists() || !(new File(indat)).exists())
-            throw new IOException("One of the specified files doesn't exist");
-
-          // Run the creation script
-          r = new BufferedReader(new FileReader(inque));
-          loadData(r);
-          r.close();
-          System.out.println("Database recreated successfully");
-
-          // Run the data loading script
-          r = new BufferedReader(new FileReader(indat));
-          loadData(r);
-          r.close();
-          System.out.println("Data loaded successfully");
-          break;
+        case "reset": subReset(false); break;
+        case "physical": subReset(true); break;
+        case "migrate": subMigrate(); break;
         default:
           System.out.println("Operation aborted");
       }
@@ -64,23 +48,114 @@ public class CmdReset extends Command {
     }
   }
 
+  /** subReset(phys) recreates the database from a creation script and loads a
+    * data file into it. With phys, the physical design script is run between
+    * the two, so data is loaded straight into partitions and indexes.
+    *
+    * @param phys True if the physical design should be used */
+
+  private void subReset(boolean phys) throws IOException, SQLException {
+    System.out.println("Type creation script"+(phys ? ", physical design script," : "")+
+      " and data file paths.");
+
+    // Get the creation, physical design, and data SQL script paths
+    String inque, inphy = null, indat;
+    BufferedReader r;
+    do { inque = prompt("RES > Creator"); } while (inque.equals(""));
+    if (phys) { do { inphy = prompt("RES > Physical"); } while (inphy.equals("")); }
+    do { indat = prompt("RES > DatFile"); } while (indat.equals(""));
+
+    if (!(new File(inque)).exists() || !(new File(indat)).exists() ||
+        (phys && !(new File(inphy)).exists()))
+      throw new IOException("One of the specified files doesn't exist");
+
+    // Run the creation script (and the physical design's)
+    r = new BufferedReader(new FileReader(inque));
+    loadData(r);
+    r.close();
+    if (phys) {
+      r = new BufferedReader(new FileReader(inphy));
+      loadData(r);
+      r.close();
+    }
+    con.accounts().clear();
+    con.recent().clear();
+    System.out.println("Database recreated successfully");
+
+    // Run the data loading script, and index the names loaded
+    r = new BufferedReader(new FileReader(indat));
+    loadData(r);
+    r.close();
+    if (con.customers().isWarm()) { con.customers().warm(); }
+    System.out.println("Data loaded successfully");
+  }
+
+  /** subMigrate() moves the loaded database into the physical design: the
+    * physical design script is run as one transaction, so the database is
+    * either migrated or left as it was. */
+
+  private void subMigrate() throws IOException, SQLException {
+    System.out.println("Type the physical design script path.");
+
+    String inphy;
+    do { inphy = prompt("RES > Physical"); } while (inphy.equals(""));
+    if (!(new File(inphy)).exists())
+      throw new IOException("The specified file doesn't exist");
+
+    BufferedReader r = new BufferedReader(new FileReader(inphy));
+    final ArrayList<String> qs = new ArrayList<>();
+    split(r, qs::add);
+    r.close();
+
+    con.transact(w -> {
+      for(String q : qs) {
+        PreparedStatement p = con.genQuery(q);
+        p.executeUpdate();
+        p.close();
+      }
+      return null;
+    });
+    System.out.println("Database migrated successfully");
+  }
+
   /** loadData(r) loads SQL queries from the bufferedreader provided, and
-    * executes every query in the file linked to the reader.
+    * executes every query in the file linked to the reader (see split), one
+    * at a time as they're read.
     *
     * @param r A bufferedreader linked to a file with queries to execute */
 
   private void loadData(BufferedReader r) throws IOException, SQLException {
-    String line, dat = "";
+    split(r, q -> {
+      ps = con.genQuery(q);
+      ps.executeUpdate();
+      ps.close();
+    });
+  }
+
+  // Each is what's done with each query read by split()
+  private interface Each { void run(String q) throws SQLException; }
+
+  /** split(r, e) reads the queries from the bufferedreader provided, passing
+    * each to e as it's read. A query ends at a line with a ';', unless the
+    * line is inside a $$-quoted body (like a function's), whose statements
+    * end with the query around them.
+    *
+    * @param r A bufferedreader linked to a file with queries
+    * @param e What to do with each query */
+
+  private static void split(BufferedReader r, Each e) throws IOException, SQLException {
+    String line;
+    StringBuilder dat = new StringBuilder();
+    boolean quoted = false;
 
     while((line = r.readLine()) != null) {
-      dat += line+"\n";
-      
-      if (line.contains(";")) {
-        ps = con.genQuery(dat);
-        ps.executeUpdate();
-        ps.close();
-        dat = "";
+      dat.append(line).append("\n");
+      if (line.split("\\$\\$", -1).length % 2 == 0) { quoted = !quoted; }
+
+      if (!quoted && line.contains(";")) {
+        e.run(dat.toString());
+        dat.setLength(0);
       }
     }
   }
-}
\ No newline at end of file
+}
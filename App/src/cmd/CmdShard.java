@@ -0,0 +1,89 @@
+/**
+  * CmdShard manages hot accounts: accounts whose balance is striped across
+  * shards so that many credits can be made to them at once (see Shards).
+  * It's meant for accounts like a branch's fee account, that a large share of
+  * all postings go to.
+  *
+  * Date: 18 October 2026
+  */
+
+package cmd;
+
+import java.sql.SQLException;
+import java.util.Map;
+
+import dbase.Shards;
+
+public class CmdShard extends Command {
+  public void execute() {
+    System.out.println(
+      "Subcommands for Shard\n"+
+      "---------------------------------------------------------------------\n"+
+      "list   List the hot accounts and their balances\n"+
+      "add    Make an account hot (or change its number of shards)\n"+
+      "rem    Fold an account's shards and make it an ordinary account\n"+
+      "fold   Fold the shards of every hot account into its balance"
+    );
+
+    try {
+      switch(prompt("SHARD")) {
+        case "list": subList(); break;
+        case "add": subAdd(); break;
+        case "rem": subRem(); break;
+        case "fold":
+          System.out.println(con.shards().foldAll()+" hot accounts folded");
+          break;
+        default:
+          System.out.println("Command not recognized");
+      }
+    }
+    catch(SQLException e) {
+      System.out.println("SQL-ERR: "+e.getMessage());
+    }
+    catch(Exception e) {
+      System.out.println("Input rejected: "+e.getMessage());
+    }
+  }
+
+  /** subList() lists every hot account, its number of shards, and its balance
+    * both folded (Account row) and whole (shards included). */
+
+  private void subList() throws SQLException {
+    Map<Long,Integer> hot = con.shards().getHot();
+    if (hot.isEmpty()) { System.out.println("There are no hot accounts"); return; }
+
+    System.out.println("AID          Shards  Folded balance  Whole balance");
+    System.out.println("-------------------------------------------------");
+    for(Map.Entry<Long,Integer> e : hot.entrySet()) {
+      rs = con.query(
+        "SELECT A.\"Balance\", "+Shards.BALANCE+" AS \"Whole\" FROM \"Account\" A "+
+        "WHERE \"AID\" = ?", e.getKey()
+      );
+      if (rs.next())
+        System.out.printf("%012d %6d  %14.2f  %13.2f\n",
+          e.getKey(), e.getValue(), rs.getDouble("Balance"), rs.getDouble("Whole"));
+      rs.close();
+    }
+  }
+
+  /** subAdd() makes an account hot, with the number of shards asked for */
+
+  private void subAdd() throws SQLException {
+    long aid = Long.parseLong(prompt("SHARD > AID").trim());
+    System.out.println("How many shards (2-"+Shards.MAX+")?");
+    int n = Integer.parseInt(prompt("SHARD > Shards").trim());
+
+    con.shards().designate(aid, n);
+    System.out.println("Account "+aid+" is hot with "+n+" shards");
+  }
+
+  /** subRem() makes a hot account an ordinary account again */
+
+  private void subRem() throws SQLException {
+    long aid = Long.parseLong(prompt("SHARD > AID").trim());
+    if (!con.shards().isHot(aid)) { System.out.println("Account "+aid+" isn't hot"); return; }
+
+    con.shards().retire(aid);
+    System.out.println("Account "+aid+" is no longer hot");
+  }
+}
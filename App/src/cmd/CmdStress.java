@@ -0,0 +1,234 @@
+/**
+  * CmdStress is a debug command that hammers one or two accounts with
+  * concurrent postings through the Ledger, and then checks nothing was lost:
+  * + Each balance moved by exactly the postings that succeeded
+  * + Exactly one Transaction row was written per posting that succeeded
+  * + No debit took a balance (that started non-negative) below zero
+  *
+  * With one account, workers post random credits and debits to it. With two,
+  * they also transfer random amounts back and forth between them, in both
+  * directions at once, to show ordered locking keeps transfers from
+  * deadlocking. Every worker runs on its own pooled connection, so the App
+  * must be started with a pool bigger than 1 (see 'pool <n>'). The postings
+  * made are real; run it against a scratch database.
+  *
+  * In queue mode, the credits and debits are submitted to the posting queue
+  * (see PostingQueue) instead, without waiting for each to commit, so they're
+  * posted in groups while the transfers race them on the same accounts. The
+  * queue's committer needs a connection too, so the pool must be bigger than
+  * 2. The deadlocks the server detected during the run are counted in either
+  * mode; they're retried, so they don't lose postings, but there should be
+  * none.
+  *
+  * Date: 18 October 2026
+  */
+
+package cmd;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import dbase.Ledger;
+import dbase.Lease;
+import dbase.Shards;
+
+public class CmdStress extends Command {
+  public void execute() {
+    try {
+      System.out.println(
+        "DEBUG: Post concurrently to one or two accounts and check the results.\n"+
+        "Type one AID, or two comma-delimited AIDs to also test transfers."
+      );
+      String[] in = prompt("STRESS > AID").split(",");
+      long[] aid = new long[Math.min(in.length, 2)];
+      for(int i=0; i<aid.length; i++) { aid[i] = Long.parseLong(in[i].trim()); }
+
+      int threads = Integer.parseInt(prompt("STRESS > Threads").trim());
+      int each = Integer.parseInt(prompt("STRESS > Postings per thread").trim());
+      boolean queue = isYes(prompt("STRESS > Through the posting queue (y/n)").trim());
+
+      // The main thread holds a connection too (and so does the committer, in
+      // queue mode), so workers get the rest
+      int spare = con.getPoolSize() - (queue ? 2 : 1);
+      if (spare < 1)
+        throw new Exception("Start the App with 'pool <n>' (n >= "+(queue ? 3 : 2)+") to stress test");
+      if (threads > spare) {
+        threads = spare;
+        System.out.println("Using "+threads+" threads (one per spare pooled connection)");
+      }
+
+      run(aid, threads, each, queue);
+    }
+    catch(SQLException e) {
+      System.out.println("SQL-ERR: "+e.getMessage());
+    }
+    catch(Exception e) {
+      System.out.println("Input rejected: "+e.getMessage());
+    }
+  }
+
+  /** run(aid, threads, each, queue) runs the workers and checks the accounts
+    * after.
+    *
+    * @param aid The accounts posted to (one or two)
+    * @param threads The number of workers
+    * @param each The number of postings each worker makes
+    * @param queue True to submit credits and debits to the posting queue */
+
+  // Each worker holds its lease, never referencing it, so it posts on a
+  // pooled connection of its own
+  @SuppressWarnings("try")
+  private void run(long[] aid, int threads, int each, boolean queue)
+    throws SQLException, InterruptedException {
+    double[] start = balances(aid);
+    long rows = transactions(aid);
+    long deadlocks = deadlocks();
+
+    // net holds the cents each account moved by through postings that were
+    // made; posted counts Transaction rows written, declined refused postings
+    AtomicLong[] net = new AtomicLong[aid.length];
+    for(int i=0; i<aid.length; i++) { net[i] = new AtomicLong(); }
+    AtomicLong posted = new AtomicLong(), declined = new AtomicLong(), failed = new AtomicLong();
+
+    ArrayList<Thread> work = new ArrayList<>();
+    for(int t=0; t<threads; t++) {
+      work.add(new Thread(() -> {
+        ThreadLocalRandom r = ThreadLocalRandom.current();
+
+        // pending holds the postings this worker queued, until they complete
+        ArrayList<CompletableFuture<Double>> pending = new ArrayList<>();
+
+        try (Lease l = con.lease()) {
+          for(int i=0; i<each; i++) {
+            long cents = r.nextLong(1, 5000);
+            double amt = cents / 100.0;
+
+            try {
+              if (aid.length == 2 && r.nextBoolean()) {
+                int from = r.nextInt(2), to = 1 - from;
+                Ledger.transfer(con, aid[from], aid[to], amt, "STRESS TRANSFER");
+                net[from].addAndGet(-cents);
+                net[to].addAndGet(cents);
+                posted.addAndGet(2);
+              }
+              else if (queue) {
+                int a = r.nextInt(aid.length);
+                boolean deb = r.nextBoolean();
+                pending.add(con.postings().submit(aid[a], amt, deb, "self", "self", "STRESS QUEUE")
+                  .whenComplete((bal, e) -> {
+                    if (e == null) {
+                      net[a].addAndGet(deb ? -cents : cents);
+                      posted.incrementAndGet();
+                    }
+                    else if (e instanceof Ledger.Declined) { declined.incrementAndGet(); }
+                    else {
+                      failed.incrementAndGet();
+                      System.out.println("Queued posting failed: "+e.getMessage());
+                    }
+                  }));
+              }
+              else {
+                int a = r.nextInt(aid.length);
+                boolean deb = r.nextBoolean();
+                Ledger.post(con, aid[a], amt, deb, "self", "self", "STRESS");
+                net[a].addAndGet(deb ? -cents : cents);
+                posted.incrementAndGet();
+              }
+            }
+            catch(Ledger.Declined e) { declined.incrementAndGet(); }
+          }
+
+          // The postings queued were counted as they completed
+          for(CompletableFuture<Double> f : pending) {
+            try { f.join(); }
+            catch(CompletionException e) {}
+          }
+        }
+        catch(SQLException e) {
+          failed.incrementAndGet();
+          System.out.println("Worker failed: "+e.getMessage());
+        }
+      }, "stress-"+t));
+    }
+
+    long t0 = System.nanoTime();
+    for(Thread t : work) { t.start(); }
+    for(Thread t : work) { t.join(); }
+    double secs = (System.nanoTime() - t0) / 1e9;
+
+    // Check the results
+    double[] end = balances(aid);
+    long added = transactions(aid) - rows;
+    deadlocks = deadlocks() - deadlocks;
+    boolean ok = failed.get() == 0 && added == posted.get() && deadlocks == 0;
+
+    System.out.printf(
+      "%d postings (%d declined) by %d threads%s in %.2fs: %.0f postings/s\n",
+      posted.get(), declined.get(), threads, queue ? " through the queue" : "", secs,
+      (posted.get() + declined.get()) / secs
+    );
+    for(int i=0; i<aid.length; i++) {
+      double want = start[i] + net[i].get() / 100.0;
+      boolean match = Math.abs(end[i] - want) < 0.01;
+      boolean floor = start[i] < 0 || end[i] >= 0;
+      ok = ok && match && floor;
+
+      System.out.printf(
+        "  %012d: $%.2f -> $%.2f, expected $%.2f%s%s\n", aid[i], start[i], end[i], want,
+        match ? "" : " LOST UPDATES", floor ? "" : " OVERDRAWN"
+      );
+    }
+    System.out.println("  "+added+" transaction rows written for "+posted.get()+" postings");
+    System.out.println("  "+deadlocks+" deadlocks detected by the server");
+    System.out.println(ok ? "PASS" : "FAIL");
+  }
+
+  /** balances(aid) returns the balances of the accounts */
+
+  private double[] balances(long[] aid) throws SQLException {
+    double[] bal = new double[aid.length];
+    for(int i=0; i<aid.length; i++) {
+      rs = con.query(
+        "SELECT "+Shards.BALANCE+" AS \"Balance\" FROM \"Account\" A WHERE \"AID\" = ?", aid[i]
+      );
+      if (!rs.next()) { rs.close(); throw new SQLException("Account "+aid[i]+" doesn't exist"); }
+      bal[i] = rs.getDouble("Balance");
+      rs.close();
+    }
+    return bal;
+  }
+
+  /** deadlocks() returns the number of deadlocks the server has detected in
+    * the database. The count is only as current as the statistics the
+    * server's backends have reported. */
+
+  private long deadlocks() throws SQLException {
+    ResultSet r = con.query(
+      "SELECT \"deadlocks\" FROM pg_stat_database WHERE \"datname\" = current_database()"
+    );
+    r.next();
+    long n = r.getLong(1);
+    r.close();
+    return n;
+  }
+
+  /** transactions(aid) returns the number of transactions on the accounts */
+
+  private long transactions(long[] aid) throws SQLException {
+    Long[] ids = new Long[aid.length];
+    for(int i=0; i<aid.length; i++) { ids[i] = aid[i]; }
+
+    ResultSet r = con.query(
+      "SELECT COUNT(*) FROM \"Transaction\" WHERE \"AID\" = ANY(?)", (Object)ids
+    );
+    r.next();
+    long n = r.getLong(1);
+    r.close();
+    return n;
+  }
+}
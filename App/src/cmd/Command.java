@@ -8,11 +8,13 @@
 package cmd;
 
 import dbase.Conn;
+import dbase.Customers;
 
 import java.lang.ClassNotFoundException;
 import java.util.Scanner;
 import java.util.ArrayList;
 import java.util.Hashtable;
+import java.util.List;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
@@ -184,6 +186,33 @@ public abstract class Command {
     return input;
   }
 
+  /** pickCustomer(pr, in) resolves what the user typed to a customer (see
+    * Customers): a CID, a full name, or part of one. If several customers
+    * match, they're listed and the user picks one by CID.
+    *
+    * @param pr The prompt to pick a customer with
+    * @param in The CID or name typed
+    * @return The CID of the customer picked */
+
+  protected int pickCustomer(String pr, String in) throws Exception {
+    List<Customers.Match> ms = con.customers().resolve(in);
+    if (ms.isEmpty()) { throw new Exception("No customer matches '"+in.trim()+"'"); }
+    if (ms.size() == 1) {
+      System.out.println("Customer: "+ms.get(0));
+      return ms.get(0).cid;
+    }
+
+    System.out.println("Which of these customers is it? (CID)");
+    for(Customers.Match m : ms) { System.out.println(m); }
+    if (ms.size() == Customers.LIMIT)
+      System.out.println("(only the first "+Customers.LIMIT+" matches are shown)");
+
+    String pick = prompt(pr).trim();
+    for(Customers.Match m : ms)
+      if (Integer.toString(m.cid).equals(pick)) { return m.cid; }
+    throw new Exception("Customer ID entered was not one listed");
+  }
+
   /****************************************************************************/
 
   /** buildSelect(props) builds a comma-delimited string from the list of
@@ -248,6 +277,8 @@ public abstract class Command {
       case "customer": return new CmdCustomer();
       case "reset": return new CmdReset();
       case "account": return new CmdAccount();
+      case "stress": return new CmdStress();
+      case "shard": return new CmdShard();
       default: return null;
     }
   }
@@ -0,0 +1,146 @@
+/**
+  * SubHistory is a subcommand of account, showing an account's transactions
+  * newest first, a page at a time, filtered by date range, type, and pending
+  * status.
+  *
+  * Pages are found by keyset rather than OFFSET: each page starts after the
+  * ("Date","TID") of the last row shown, so a page deep into the history
+  * costs the same as the first. Rows are read through a server-side cursor
+  * (see Work.stream), so asking for the rest of the history of an account
+  * with millions of transactions streams them in FETCH rows at a time.
+  *
+  * Date: 18 October 2026
+  */
+
+package cmd.acct;
+
+import cmd.Command;
+import dbase.AccountCache;
+import dbase.Work;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+
+public class SubHistory extends Command {
+  // PAGE is the number of transactions shown a page
+  // FETCH is the number of rows fetched from the cursor at a time
+  public static final int PAGE = 20, FETCH = 500;
+
+  // COLS are the columns shown of each transaction
+  private static final String COLS =
+    "\"TID\", \"Date\", \"Type\", \"Amount\", \"Rec_Route\", \"Rec_AID\", \"Desc\", \"isPending\"";
+
+  // aid is the account shown
+  // from and to bound the dates shown (null for no bound)
+  // type is the type shown (null for both), and pending the status (null for
+  //   either)
+  // date and tid are the key of the last row shown, or null before the first
+  private long aid;
+  private LocalDate from, to, date;
+  private String type;
+  private Boolean pending;
+  private long tid;
+
+  public void execute() {
+    try {
+      System.out.println("What account do you want the history of (type aid)?");
+      aid = Long.parseLong(prompt("ACCT > HIST > AID").trim());
+      if (con.accounts().summary(aid) == null)
+        throw new Exception("The given account ID doesn't exist");
+
+      subFilter();
+
+      System.out.println(
+        "\nDate        TID          Type     Amount      Recipient              Pending  Description\n"+
+        "---------------------------------------------------------------------------------------------"
+      );
+
+      // Show pages until the history ends or the user stops
+      int n = page(PAGE);
+      while(n == PAGE) {
+        System.out.println("Enter for the next page, 'all' for the rest, anything else to stop");
+        String cmd = prompt("ACCT > HIST").trim().toLowerCase();
+
+        if (cmd.equals("")) {
+          if (!hasScanner()) { break; }
+          n = page(PAGE);
+        }
+        else if (cmd.equals("all")) { n = page(0); }
+        else { break; }
+      }
+
+      if (date == null) { System.out.println("No transactions match"); }
+    }
+    catch(SQLException e) {
+      System.out.println("SQL-ERR: "+e.getMessage());
+    }
+    catch(Exception e) {
+      System.out.println("Input rejected: "+e.getMessage());
+    }
+  }
+
+  /** subFilter() asks for the filters on the history; a blank answer leaves
+    * a filter out. */
+
+  private void subFilter() throws Exception {
+    System.out.println("Filter the history (leave blank for any)");
+
+    String in = prompt("ACCT > HIST > From (YYYY-MM-DD)").trim();
+    from = in.isEmpty() ? null : LocalDate.parse(in);
+    in = prompt("ACCT > HIST > To (YYYY-MM-DD)").trim();
+    to = in.isEmpty() ? null : LocalDate.parse(in);
+    if (from != null && to != null && from.isAfter(to))
+      throw new Exception("The start date is after the end date");
+
+    in = prompt("ACCT > HIST > Type (debit/credit)").trim().toUpperCase();
+    if (!in.isEmpty() && !in.equals("DEBIT") && !in.equals("CREDIT"))
+      throw new Exception("Type must be debit or credit");
+    type = in.isEmpty() ? null : in;
+
+    in = prompt("ACCT > HIST > Pending (y/n)").trim().toLowerCase();
+    if (!in.isEmpty() && !isYes(in) && !isNo(in))
+      throw new Exception("Pending must be y or n");
+    pending = in.isEmpty() ? null : isYes(in);
+  }
+
+  /** page(n) shows the next n transactions (or all the rest, if n is 0),
+    * starting after the last one shown.
+    *
+    * @param n The number of transactions to show, or 0 for all
+    * @return The number of transactions shown */
+
+  private int page(int n) throws SQLException {
+    // Only the filters given are in the query, so each mix of filters is its
+    // own statement (and plan) with the index on ("AID","Date") leading
+    ArrayList<Object> args = new ArrayList<>();
+    String sql = "SELECT "+COLS+" FROM \"Transaction\" WHERE \"AID\" = ?";
+    args.add(aid);
+    if (from != null) { sql += " AND \"Date\" >= ?"; args.add(from); }
+    if (to != null) { sql += " AND \"Date\" <= ?"; args.add(to); }
+    if (type != null) { sql += " AND \"Type\" = ?"; args.add(type); }
+    if (pending != null) { sql += " AND \"isPending\" = ?"; args.add(pending); }
+    if (date != null) { sql += " AND (\"Date\", \"TID\") < (?, ?)"; args.add(date); args.add(tid); }
+    sql += " ORDER BY \"Date\" DESC, \"TID\" DESC";
+    if (n > 0) { sql += " LIMIT ?"; args.add(n); }
+
+    int shown = 0;
+    try (Work w = con.begin()) {
+      ResultSet r = w.stream(sql, FETCH, args.toArray());
+      while(r.next()) {
+        date = r.getDate("Date").toLocalDate();
+        tid = r.getLong("TID");
+        shown++;
+
+        String desc = r.getString("Desc");
+        System.out.printf("%s  %-11d  %-7s  %10.2f  %-9s %-12s  %-7s  %s\n",
+          date, tid, r.getString("Type"), r.getDouble("Amount"), r.getString("Rec_Route"),
+          r.getString("Rec_AID"), r.getBoolean("isPending") ? "yes" : "no",
+          desc == null ? "" : desc);
+      }
+      r.close();
+    }
+    return shown;
+  }
+}
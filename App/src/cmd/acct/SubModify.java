@@ -10,18 +10,22 @@
 package cmd.acct;
 
 import cmd.Command;
-import cmd.CmdAccount;
+import cmd.CmdCustomer;
+import dbase.Ledger;
+import dbase.AccountCache;
+import dbase.Recent;
 
 import java.sql.SQLException;
-import java.sql.PreparedStatement;
 import java.sql.ResultSet;
-import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CompletionException;
 import java.time.LocalDate;
 
 public class SubModify extends Command {
   private String aid;
+  private long id;
   private ArrayList<Integer> ids = new ArrayList<>();
   private ArrayList<String> crd = new ArrayList<>();
 
@@ -29,18 +33,16 @@ public class SubModify extends Command {
     // Get the account ID the user wishes to modify, and check it isn't closed
     try {
       System.out.println("What account do you wish to modify (type aid)?");
-      aid = prompt("ACCT > MOD > AID");
+      aid = prompt("ACCT > MOD > AID").trim();
+      id = Long.parseLong(aid);
 
-      ps = con.genQuery("SELECT \"AID\", \"Date_Close\" FROM \"Account\" WHERE \"AID\"="+aid);
-      rs = ps.executeQuery();
+      AccountCache.Summary acct = con.accounts().summary(id);
 
-      if (!rs.next())
+      if (acct == null)
         throw new Exception("The given account ID doesn't exist");
-      else if (rs.getString("Date_Close") != null)
-        throw new Exception("The given account is closed as of "+rs.getString("Date_Close"));
+      else if (acct.close != null)
+        throw new Exception("The given account is closed as of "+acct.close);
 
-      rs.close();
-      ps.close();
       subHelp(); // Show help here so it only prints once
     }
     catch(SQLException e) { System.out.println("ERR: "+e.getMessage()); return; }
@@ -58,14 +60,11 @@ public class SubModify extends Command {
           case "close": if (subClose()) { return; } break;
           case "credit": subCredit(false); break;
           case "debit": subCredit(true); break;
+          case "transfer": subTransfer(); break;
+          case "last": subLast(); break;
           // DEBUG: Get the account's balance
           case "bal":
-            ps = con.genQuery("SELECT \"Balance\" FROM \"Account\" WHERE \"AID\" = "+aid);
-            rs = ps.executeQuery();
-            rs.next();
-            System.out.println("Account balance: "+rs.getDouble("Balance"));
-            rs.close();
-            ps.close();
+            System.out.println("Account balance: "+con.accounts().summary(id).balance);
             break;
           default:
             if (Command.isReturn(cmd)) { return; }
@@ -92,6 +91,8 @@ public class SubModify extends Command {
       "owner    Manipulate owners of the account\n"+
       "credit   Credit account for a deposit\n"+
       "debit    Process a withdrawal for an account\n"+
+      "transfer Transfer funds to another account\n"+
+      "last     Show the account's last "+Recent.DEPTH+" transactions\n"+
       "close    Close an account\n"+
       "ret      Return to account command\n\n"+
       "Use 'ret' to return and then recall this command to change AID"
@@ -103,8 +104,9 @@ public class SubModify extends Command {
     *
     * <ul>
     *  <li>Ask for the amount (a positive amount)
-    *  <li>Update the account's balance to reflect the change
-    *  <li>Issue a transaction on the account regarding the change
+    *  <li>Submit the change to the posting queue (see PostingQueue), which
+    *      posts it with a transaction regarding the change (see Ledger);
+    *      debits are refused if the balance doesn't cover them
     * </ul>
     *
     * @param isDeb True if this transaction is debit instead of credit*/
@@ -114,30 +116,63 @@ public class SubModify extends Command {
       System.out.println("How much should the account be "+(isDeb?"debited":"credited")+"?");
       double amnt = Double.parseDouble(prompt("ACCT > MOD > "+(isDeb?"DEBIT":"CREDIT")));
 
-      if (amnt < 0)
-        throw new Exception("Amount being "+(isDeb ? "withdrawn" : "deposited")+" cannot be negative");
+      if (amnt <= 0)
+        throw new Exception("Amount being "+(isDeb ? "withdrawn" : "deposited")+" must be positive");
 
-      // Deposit the amount to the account and make a transaction
-      ps = con.genQuery(
-        "UPDATE \"Account\" SET \"Balance\" = (SELECT \"Balance\""+(isDeb?"-":"+")+amnt+
-        " FROM \"Account\" WHERE \"AID\" = "+aid+") WHERE \"AID\" = "+aid+";"+
-        "INSERT INTO \"Transaction\"(\"AID\",\"Type\",\"Date\",\"Amount\",\"Rec_Route\",\"Rec_AID\",\"Desc\",\"isPending\") VALUES "+
-        "("+aid+",'"+(isDeb?"DEBIT":"CREDIT")+"','"+LocalDate.now().toString()+"',"+amnt+",?,?,?,true);"
-      );
-      ps.setString(1, isDeb ? "'bank'" : "'self'");
-      ps.setString(2, isDeb ? "'bank'" : "'self'");
-      ps.setString(3, isDeb ? "'COUNTER CHECK'" : "'COUNTER DEPOSIT'");
-
-      if (ps.executeUpdate() > 0)
-        System.out.println("Transaction was made successfully");
-      
-      ps.close();
+      // Submit the posting, and wait for the group it's in to commit
+      double bal = con.postings().submit(id, amnt, isDeb, isDeb ? "bank" : "self",
+        isDeb ? "bank" : "self", isDeb ? "COUNTER CHECK" : "COUNTER DEPOSIT").join();
+
+      System.out.printf("Transaction was made successfully (balance $%.2f)\n", bal);
+    }
+    catch(CompletionException e) {
+      System.out.println("Transaction failed: "+e.getCause().getMessage());
     }
     catch(Exception e) {
       System.out.println("Transaction failed: "+e.getMessage());
     }
   }
 
+  /** subLast() shows the account's last transactions, newest first. They're
+    * kept in memory once shown (see Recent), so showing them after a credit
+    * or debit doesn't query the database. */
+
+  private void subLast() throws SQLException {
+    List<Recent.Posting> ps = con.recent().last(id, Recent.DEPTH);
+    if (ps.isEmpty()) { System.out.println("The account has no transactions"); return; }
+
+    System.out.println("Date        TID          Type        Amount");
+    System.out.println("--------------------------------------------");
+    for(Recent.Posting p : ps) { System.out.println(p); }
+  }
+
+  /** subTransfer() moves funds from this account to another, following this
+    * procedure:
+    *
+    * <ul>
+    *  <li>Ask for the account to transfer to, and the amount (positive)
+    *  <li>Debit this account and credit the other together, with a
+    *      transaction on each (see Ledger.transfer); the transfer is refused
+    *      if this account's balance doesn't cover it
+    * </ul> */
+
+  private void subTransfer() {
+    try {
+      System.out.println("What account should the funds go to (type aid)?");
+      long to = Long.parseLong(prompt("ACCT > MOD > TRANSFER > AID").trim());
+      System.out.println("How much should be transferred?");
+      double amnt = Double.parseDouble(prompt("ACCT > MOD > TRANSFER"));
+
+      double[] bal = Ledger.transfer(con, id, to, amnt, "TRANSFER");
+      System.out.printf(
+        "Transfer was made successfully (balances $%.2f, $%.2f)\n", bal[0], bal[1]
+      );
+    }
+    catch(Exception e) {
+      System.out.println("Transfer failed: "+e.getMessage());
+    }
+  }
+
   /** subClose() closes an account. It follows this procedure:
     *
     * <ul>
@@ -147,6 +182,7 @@ public class SubModify extends Command {
     *  </ul>
     *  <li>Close all cards on the account
     *  <li>Set the close date of the account
+    *  <li>Fold the account's shards into its balance, if it's hot (see Shards)
     * </ul>
     *
     * @return True if the account closed, or false if not
@@ -160,14 +196,21 @@ public class SubModify extends Command {
       return false;
     }
     
-    // Close all cards on the account and set the account's close date
-    ps = con.genQuery(
-      "UPDATE \"Card\" SET \"Status\"='CLOSED' WHERE \"AID\"="+aid+" AND NOT \"Status\"='CLOSED';"+
-      "UPDATE \"Account\" SET \"Date_Close\"='"+LocalDate.now().toString()+"' WHERE \"AID\"="+aid
-    );
-    System.out.println(ps.executeUpdate()+" cards closed for the account");
+    // Close all cards on the account and set the account's close date, sent
+    // as one batch and committed together
+    int[] rows = con.transact(w -> {
+      w.batch(
+        "UPDATE \"Card\" SET \"Status\" = 'CLOSED' WHERE \"AID\" = ? AND NOT \"Status\" = 'CLOSED'", id
+      );
+      w.batch("UPDATE \"Account\" SET \"Date_Close\" = ? WHERE \"AID\" = ?", LocalDate.now(), id);
+      int[] n = w.flush();
+      con.shards().retire(id);
+
+      w.afterCommit(() -> { con.accounts().evictAccount(id); con.accounts().evictCards(id); });
+      return n;
+    });
+    System.out.println(rows[0]+" cards closed for the account");
     System.out.println("Account "+aid+" was closed successfully");
-    ps.close();
 
     return true;
   }
@@ -197,70 +240,72 @@ public class SubModify extends Command {
     *
     * <ul>
     *  <li>Ask if the owner being assigned is a new customer
-    *  <li>If the owner is new, create a new customer entry
-    *  <li>If the owner isn't new, get the customer ID
-    *  <li>Assign the owner (throw an SQLException if the CID already has access
-    *      to the account as an owner)
+    *  <li>If the owner is new, get the new customer's information
+    *  <li>If the owner isn't new, get the customer by CID or name (see
+    *      Customers)
+    *  <li>Create the customer (if new) and assign the owner together (throw an
+    *      SQLException if the CID already has access to the account as an
+    *      owner)
     * </ul> */
 
   private void subOwnNew() throws SQLException, Exception {
     System.out.println("Is the owner being added a new customer? (y/n)");
 
     // Ask if the customer is a new customer
-    String isNew, cid;
+    String isNew, cid = "";
+    Object[] cust = null;
     do { isNew = prompt("ACCT > MOD > OWN"); }
     while(!isYes(isNew) && !isNo(isNew));
 
-    // Add a customer to the database if this is a new customer
+    // Get the new customer's information if this is a new customer
     // Get the CID of the customer to add otherwise
-    if (isYes(isNew))
-      cid = CmdAccount.getCustomer(scan, con);
+    if (isYes(isNew)) {
+      System.out.println("Executing customer addition...\n");
+      cust = CmdCustomer.promptNew();
+    }
     else {
-      System.out.println("Which customer will own this account? (Type name)");
-      String[] name = prompt("ACCT > MOD > OWN > Name").trim().replaceAll("'","''").split(" ");
-
-      // Get the list of CIDs with the given name
-      ids.clear();
-      ps = con.genQuery(
-        "SELECT \"CID\", \"SSN\", \"Con_Phone\" FROM \"Customer\" WHERE "+
-        "\"Fname\"='"+name[0]+"' AND \"Lname\"='"+name[1]+"'"
-        );
-      rs = ps.executeQuery();
-      System.out.println("(CID) SSN, Phone");
-      System.out.println("-------------------------------------------------");
-      while(rs.next()) {
-        System.out.printf("(%4d) %s, %s\n",
-          rs.getInt("CID"), rs.getString("SSN"), rs.getString("Con_PHone"));
-        ids.add(rs.getInt("CID"));
-      }
-      rs.close();
-      ps.close();
-      System.out.println();
-
-      // Get a CID
-      cid = getOwner();
+      System.out.println("Which customer will own this account? (CID, or a full or partial name)");
+      cid = Integer.toString(pickCustomer("ACCT > MOD > OWN > CID", prompt("ACCT > MOD > OWN > Name")));
     }
 
-    ps = con.genQuery("INSERT INTO \"Account_Owner\" VALUES ("+cid+","+aid+")");
-    if (ps.executeUpdate() == 1)
+    final Object[] nc = cust;
+    final int oc = nc == null ? Integer.parseInt(cid.trim()) : 0;
+    int row = con.transact(w -> {
+      int owner = nc == null ? oc : CmdCustomer.insert(con, nc);
+      w.afterCommit(() -> con.accounts().evictOwner(id, owner));
+      return w.update("INSERT INTO \"Account_Owner\" VALUES (?,?)", owner, id);
+    });
+    if (row == 1)
       System.out.println("New owner assigned succesfully");
-    ps.close();
   }
 
   /** subOwnRem() removes an owner from an account, or throws an error if there
-    * is only one owner listed for an account. */
+    * is only one owner listed for an account. The owners are locked and
+    * counted again when removing, in case another owner was removed since
+    * they were listed. */
 
   private void subOwnRem() throws SQLException, Exception {
     if (showOwner() == 1)
       throw new Exception("There is only one owner on the account");
 
-    String cid = getOwner();
-    ps = con.genQuery(
-      "DELETE FROM \"Account_Owner\" WHERE \"AID\"="+aid+" AND \"CID\"="+cid
-    );
-    if (ps.executeUpdate() == 1)
+    int cid = Integer.parseInt(getOwner());
+    int row = con.transact(w -> {
+      ResultSet r = w.query(
+        "SELECT \"CID\" FROM \"Account_Owner\" WHERE \"AID\" = ? FOR UPDATE", id
+      );
+      int own = 0;
+      while(r.next()) { own++; }
+      r.close();
+
+      if (own < 2) { return 0; }
+      w.afterCommit(() -> con.accounts().evictOwner(id, cid));
+      return w.update("DELETE FROM \"Account_Owner\" WHERE \"AID\" = ? AND \"CID\" = ?", id, cid);
+    });
+
+    if (row == 1)
       System.out.println("Owner successfully removed");
-    ps.close();
+    else
+      throw new Exception("The owner couldn't be removed (is it the only owner?)");
   }
 
   /** subCard() is a hub for all subcommands that manage cards on an account. It
@@ -316,30 +361,31 @@ public class SubModify extends Command {
       throw new Exception("There are no eligible cards on the account");
     else card = crd.get(0);
 
-    // Change the status of the card
-    String stat;
-    ps = con.genQuery("SELECT \"Status\" FROM \"Card\" WHERE \"Number\"='"+card+"'");
-    rs = ps.executeQuery();
-    rs.next();
-    stat = rs.getString("Status");
-    rs.close();
-    ps.close();
-
-    if (close)
-      stat = "CLOSED";
-    else
-      switch(stat) {
-        case "DISABLED": stat = "ACTIVE"; break;
-        case "ACTIVE": stat = "DISABLED"; break;
-        default:
-          throw new Exception("Status invalid. How did you get here? (Check DB)");
-      }
+    // Change the status of the card (locking it while the new status is
+    // worked out)
+    final String num = card;
+    int row = con.transact(w -> {
+      ResultSet r = w.query("SELECT \"Status\" FROM \"Card\" WHERE \"Number\" = ? FOR UPDATE", num);
+      r.next();
+      String stat = r.getString("Status");
+      r.close();
+
+      if (close)
+        stat = "CLOSED";
+      else
+        switch(stat) {
+          case "DISABLED": stat = "ACTIVE"; break;
+          case "ACTIVE": stat = "DISABLED"; break;
+          default:
+            throw new SQLException("Status invalid. How did you get here? (Check DB)");
+        }
 
-    ps = con.genQuery("UPDATE \"Card\" SET \"Status\" = '"+stat+
-      "' WHERE \"Number\" = '"+card+"'");
-    if (ps.executeUpdate() == 1)
+      w.afterCommit(() -> con.accounts().evictCards(id));
+      return w.update("UPDATE \"Card\" SET \"Status\" = ? WHERE \"Number\" = ?", stat, num);
+    });
+
+    if (row == 1)
       System.out.println("Card status toggled successfully");
-    ps.close();
   }
 
   /** subCardNew() generates a new card for an account, assigning that card to
@@ -353,11 +399,12 @@ public class SubModify extends Command {
     *  <ul>
     *   <li>If the user wishes, they can enter the new card number (temp cards)
     *  </ul>
-    *  <li>Add the new card to the list of cards in the database
+    *  <li>Add the new card to the list of cards in the database (drawing a
+    *      new number if a generated one is taken)
     * </ul> */
 
   private void subCardNew() throws SQLException, Exception {
-    String cid, crd="", sec="", pin="";
+    String cid, num = "", sec="", pin="";
     Random r = new Random();
     
     // Get the CID to add the card to
@@ -372,40 +419,44 @@ public class SubModify extends Command {
     do { ans = prompt("ACCT > MOD > CARD"); }
     while(!isYes(ans) && !isNo(ans));
 
-    // Get the card number
-    do {
-      if (isNo(ans)) {
-        crd = "";
-        for(int i=0; i<16; i++) crd += r.nextInt(10);
-      }
-      else {
-        if (crd.equals(""))
-          System.out.println("Type the number of the new card");
-        else
-          throw new Exception("Card number given already exists in the database");
-
-        crd = prompt("ACCT > MOD > CARD > NUM");
-      }
-
-      ps = con.genQuery("SELECT \"Number\" FROM \"Card\" WHERE \"Number\" = '"+crd+"'");
-      rs = ps.executeQuery();
+    // Get the card number of a temporary card
+    final boolean temp = isYes(ans);
+    if (temp) {
+      System.out.println("Type the number of the new card");
+      num = prompt("ACCT > MOD > CARD > NUM");
     }
-    while(rs.next());
-    rs.close();
-    ps.close();
 
     // SEC, PIN numbers
     for(int i=0; i<3; i++) sec += r.nextInt(10);
     for(int i=0; i<4; i++) pin += r.nextInt(10);
 
-    // Insert the card into the database
-    ps = con.genQuery("INSERT INTO \"Card\" VALUES ('"+crd+"','"+
-      LocalDate.now().toString()+"','"+sec+"','"+pin+"', "+
-      (isNo(ans) ? "'PENDING'" : "'ACTIVE'")+
-      ","+aid+","+cid+")");
-    if (ps.executeUpdate() == 1)
-      System.out.println("Card was added successfully");
-    ps.close();
+    // Insert the card into the database; a generated number that's taken is
+    // drawn again, but a temporary card's number must be free
+    final String tnum = num, csc = sec, cpin = pin;
+    final int owner = Integer.parseInt(cid);
+    String crd = con.transact(w -> {
+      while(true) {
+        String n = tnum;
+        if (!temp) {
+          n = "";
+          for(int i=0; i<16; i++) n += r.nextInt(10);
+        }
+
+        int row = w.update(
+          "INSERT INTO \"Card\" VALUES (?,?,?,?,?,?,?) ON CONFLICT (\"Number\") DO NOTHING",
+          n, LocalDate.now(), csc, cpin, temp ? "ACTIVE" : "PENDING", id, owner
+        );
+        if (row == 1) {
+          w.afterCommit(() -> con.accounts().evictCards(id));
+          return n;
+        }
+        if (temp) { return null; }
+      }
+    });
+
+    if (crd == null)
+      throw new Exception("Card number given already exists in the database");
+    System.out.println("Card was added successfully");
   }
 
   /** showOwner() fetches all the owners of the account, and shows them, their
@@ -416,27 +467,16 @@ public class SubModify extends Command {
 
   private int showOwner() throws SQLException {
     int own = 0;
-    PreparedStatement p = con.genQuery(
-      "SELECT \"CID\", \"Fname\", \"Lname\", \"SSN\", \"Con_Phone\" FROM \"Customer\""+
-      " WHERE \"CID\" IN (SELECT \"CID\" FROM \"Account_Owner\" WHERE \"AID\"="+aid+")"
-    );
-    ResultSet r = p.executeQuery();
     ids.clear();
 
     System.out.println("(CID) SSN, Phone, Name -- Owners of Account");
     System.out.println("-----------------------------------------------------");
-    while(r.next()) {
-      System.out.printf(
-        "(%4d) %9s, %10s, %s %s\n", r.getInt("CID"), r.getString("SSN"),
-        r.getString("Con_Phone"), r.getString("Fname"), r.getString("Lname")
-      );
-      ids.add(r.getInt("CID"));
+    for(AccountCache.Owner o : con.accounts().owners(id)) {
+      System.out.printf("(%4d) %9s, %10s, %s %s\n", o.cid, o.ssn, o.phone, o.fname, o.lname);
+      ids.add(o.cid);
       own++;
     }
 
-    r.close();
-    p.close();
-
     return own;
   }
 
@@ -447,25 +487,17 @@ public class SubModify extends Command {
     * @return The number of cards enabled, pending, or disabled on the account */
 
   private int showCard(boolean nar) throws SQLException {
-    PreparedStatement p = con.genQuery(
-      "SELECT \"Number\", \"Card\".\"CID\", \"Status\", \"Fname\" FROM "+
-      "\"Customer\", \"Card\" WHERE \"AID\"="+aid+" AND NOT \"Status\" IN ('CLOSED'"+
-      (nar ? ",'PENDING'" : "")+") AND \"Card\".\"CID\" = \"Customer\".\"CID\""
-    );
-    ResultSet r = p.executeQuery();
     int card = 0;
     crd.clear();
 
     System.out.println("Cards attached to this account (CID,NAM,NUM,STATUS):");
-    while(r.next()) {
-      System.out.print(String.format( "(%s, %s, %s, %s)\n",
-        r.getString("CID"), r.getString("Fname"), r.getString("Number"), r.getString("Status")
-      ));
-      crd.add(r.getString("Number"));
+    for(AccountCache.Card c : con.accounts().cards(id)) {
+      if (c.status.equals("CLOSED") || (nar && c.status.equals("PENDING"))) { continue; }
+
+      System.out.print(String.format("(%s, %s, %s, %s)\n", c.cid, c.fname, c.number, c.status));
+      crd.add(c.number);
       card++;
     }
-    r.close();
-    p.close();
 
     return card;
   }
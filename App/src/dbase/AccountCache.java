@@ -0,0 +1,241 @@
+/**
+  * AccountCache caches what tellers look at over and over in a session:
+  * account summaries, the owners and cards of accounts (by AID), and the
+  * accounts of customers (by CID). Each is a Cache of SIZE entries that live
+  * for TTL ms, loaded by one query however many entries are missing.
+  *
+  * The App's own writes evict what they change once their unit of work
+  * commits (see Work.afterCommit), so a teller sees their own changes right
+  * away. Changes made by other Apps are announced by triggers and evicted by
+  * the Listener as they're heard; TTL only bounds how stale an entry can get
+  * while the Listener is disconnected.
+  *
+  * Owners, cards and accounts are lists, and their loaders return an empty
+  * list for a key with none (even a key that doesn't exist), so a key's
+  * absence is cached too. Adding the first owner or card announces the key
+  * like any other change, so the empty list is evicted when it goes stale.
+  * Summaries aren't lists; an account that doesn't exist isn't cached.
+  *
+  * Date: 18 October 2026
+  */
+
+package dbase;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class AccountCache {
+  // SIZE is the most entries each cache holds, and TTL how long (ms) they live
+  public static final int SIZE = 1024;
+  public static final long TTL = 30000;
+
+  // Summary is an account's row, with its whole balance (see Shards)
+  public static class Summary {
+    public final long aid;
+    public final String type, open, close;
+    public final double balance;
+
+    Summary(ResultSet r) throws SQLException {
+      aid = r.getLong("AID");
+      type = r.getString("Type");
+      open = r.getString("Date_Open");
+      close = r.getString("Date_Close");
+      balance = r.getDouble("Balance");
+    }
+  }
+
+  // Owner is a customer owning an account
+  public static class Owner {
+    public final int cid;
+    public final String fname, lname, ssn, phone;
+
+    Owner(ResultSet r) throws SQLException {
+      cid = r.getInt("CID");
+      fname = r.getString("Fname");
+      lname = r.getString("Lname");
+      ssn = r.getString("SSN");
+      phone = r.getString("Con_Phone");
+    }
+  }
+
+  // Card is a card on an account, with the first name of its holder
+  public static class Card {
+    public final String number, status, pin, sec, fname;
+    public final int cid;
+    public final LocalDate exp;
+
+    Card(ResultSet r) throws SQLException {
+      number = r.getString("Number");
+      status = r.getString("Status");
+      pin = r.getString("PIN");
+      sec = r.getString("Sec_Code");
+      fname = r.getString("Fname");
+      cid = r.getInt("CID");
+      exp = r.getDate("Exp_Date").toLocalDate();
+    }
+  }
+
+  private static final String
+    SUMMARY =
+      "SELECT \"AID\", \"Type\", \"Date_Open\", \"Date_Close\", "+Shards.BALANCE+" AS \"Balance\" "+
+      "FROM \"Account\" A WHERE \"AID\" = ANY(?)",
+    OWNERS =
+      "SELECT W.\"AID\", U.\"CID\", U.\"Fname\", U.\"Lname\", U.\"SSN\", U.\"Con_Phone\" "+
+      "FROM \"Account_Owner\" W JOIN \"Customer\" U ON U.\"CID\" = W.\"CID\" "+
+      "WHERE W.\"AID\" = ANY(?) ORDER BY W.\"AID\", U.\"CID\"",
+    CARDS =
+      "SELECT C.\"AID\", C.\"Number\", C.\"CID\", C.\"Status\", C.\"PIN\", C.\"Sec_Code\", "+
+      "C.\"Exp_Date\", U.\"Fname\" FROM \"Card\" C JOIN \"Customer\" U ON U.\"CID\" = C.\"CID\" "+
+      "WHERE C.\"AID\" = ANY(?) ORDER BY C.\"AID\", C.\"Exp_Date\" DESC, C.\"Number\"",
+    ACCOUNTS =
+      "SELECT \"CID\", \"AID\" FROM \"Account_Owner\" WHERE \"CID\" = ANY(?) ORDER BY \"CID\", \"AID\"";
+
+  // con is the handler the caches load through
+  private Conn con;
+  private final Cache<Long,Summary> summaries = new Cache<>("summaries", SIZE, TTL);
+  private final Cache<Long,List<Owner>> owners = new Cache<>("owners", SIZE, TTL);
+  private final Cache<Long,List<Card>> cards = new Cache<>("cards", SIZE, TTL);
+  private final Cache<Integer,List<Long>> accounts = new Cache<>("accounts", SIZE, TTL);
+
+  AccountCache(Conn c) { con = c; }
+
+  /** summary(aid) returns the account's summary, or null if it doesn't exist */
+
+  public Summary summary(long aid) throws SQLException {
+    return summaries.get(aid, this::loadSummaries);
+  }
+
+  /** summaries(aids) returns the summaries of the accounts that exist, by AID */
+
+  public Map<Long,Summary> summaries(Collection<Long> aids) throws SQLException {
+    return summaries.getAll(aids, this::loadSummaries);
+  }
+
+  /** owners(aid) returns the owners of the account, by CID */
+
+  public List<Owner> owners(long aid) throws SQLException {
+    return owners.get(aid, this::loadOwners);
+  }
+
+  /** owners(aids) returns the owners of each account, by AID */
+
+  public Map<Long,List<Owner>> owners(Collection<Long> aids) throws SQLException {
+    return owners.getAll(aids, this::loadOwners);
+  }
+
+  /** cards(aid) returns every card on the account, newest first */
+
+  public List<Card> cards(long aid) throws SQLException {
+    return cards.get(aid, this::loadCards);
+  }
+
+  /** cards(aids) returns the cards of each account (newest first), by AID */
+
+  public Map<Long,List<Card>> cards(Collection<Long> aids) throws SQLException {
+    return cards.getAll(aids, this::loadCards);
+  }
+
+  /** accounts(cid) returns the AIDs of the accounts the customer owns */
+
+  public List<Long> accounts(int cid) throws SQLException {
+    return accounts.get(cid, this::loadAccounts);
+  }
+
+  /** evictAccount(aid) drops the account's summary (after a posting, or a
+    * change to the account's row) */
+
+  public void evictAccount(long aid) { summaries.evict(aid); }
+
+  /** evictCards(aid) drops the account's cards */
+
+  public void evictCards(long aid) { cards.evict(aid); }
+
+  /** evictOwner(aid, cid) drops the owners of the account and the accounts of
+    * the customer (after one was added to or removed from the other) */
+
+  public void evictOwner(long aid, int cid) {
+    owners.evict(aid);
+    accounts.evict(cid);
+  }
+
+  /** evictCustomer(cid) drops everything showing the customer's details: the
+    * owner and card lists they're in, and their accounts. */
+
+  public void evictCustomer(int cid) {
+    owners.evictIf((k, v) -> v.stream().anyMatch(o -> o.cid == cid));
+    cards.evictIf((k, v) -> v.stream().anyMatch(c -> c.cid == cid));
+    accounts.evict(cid);
+  }
+
+  /** clear() drops every entry (after the database is reset) */
+
+  public void clear() {
+    summaries.clear();
+    owners.clear();
+    cards.clear();
+    accounts.clear();
+  }
+
+  /** getStats() returns the statistics of every cache */
+
+  public String getStats() {
+    return summaries.getStats()+" | "+owners.getStats()+" | "+cards.getStats()+" | "+
+      accounts.getStats();
+  }
+
+  /****************************************************************************/
+
+  private Map<Long,Summary> loadSummaries(Collection<Long> aids) throws SQLException {
+    HashMap<Long,Summary> res = new HashMap<>();
+    ResultSet r = con.query(SUMMARY, (Object)aids.toArray(new Long[0]));
+    while(r.next()) { res.put(r.getLong("AID"), new Summary(r)); }
+    r.close();
+    return res;
+  }
+
+  private Map<Long,List<Owner>> loadOwners(Collection<Long> aids) throws SQLException {
+    HashMap<Long,List<Owner>> res = new HashMap<>();
+    for(Long a : aids) { res.put(a, new ArrayList<>()); }
+
+    ResultSet r = con.query(OWNERS, (Object)aids.toArray(new Long[0]));
+    while(r.next()) { res.get(r.getLong("AID")).add(new Owner(r)); }
+    r.close();
+
+    for(Map.Entry<Long,List<Owner>> e : res.entrySet())
+      e.setValue(Collections.unmodifiableList(e.getValue()));
+    return res;
+  }
+
+  private Map<Long,List<Card>> loadCards(Collection<Long> aids) throws SQLException {
+    HashMap<Long,List<Card>> res = new HashMap<>();
+    for(Long a : aids) { res.put(a, new ArrayList<>()); }
+
+    ResultSet r = con.query(CARDS, (Object)aids.toArray(new Long[0]));
+    while(r.next()) { res.get(r.getLong("AID")).add(new Card(r)); }
+    r.close();
+
+    for(Map.Entry<Long,List<Card>> e : res.entrySet())
+      e.setValue(Collections.unmodifiableList(e.getValue()));
+    return res;
+  }
+
+  private Map<Integer,List<Long>> loadAccounts(Collection<Integer> cids) throws SQLException {
+    HashMap<Integer,List<Long>> res = new HashMap<>();
+    for(Integer c : cids) { res.put(c, new ArrayList<>()); }
+
+    ResultSet r = con.query(ACCOUNTS, (Object)cids.toArray(new Integer[0]));
+    while(r.next()) { res.get(r.getInt("CID")).add(r.getLong("AID")); }
+    r.close();
+
+    for(Map.Entry<Integer,List<Long>> e : res.entrySet())
+      e.setValue(Collections.unmodifiableList(e.getValue()));
+    return res;
+  }
+}
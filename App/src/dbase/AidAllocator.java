@@ -0,0 +1,86 @@
+/**
+  * AidAllocator hands out account IDs without probing the database for free
+  * ones. IDs come from the sequence "Account_AID_Seq" (see create.sql), which
+  * counts up in blocks of BLOCK, so every session reserves a block with one
+  * nextval() and then hands its IDs out in-process. Since sequences never hand
+  * out a value twice, no two sessions (or tellers) ever get the same counter.
+  *
+  * The counter is run through a keyed permutation of the 12-digit numbers - a
+  * small Feistel network over 40 bits, walking the cycle until the result is
+  * under 10^12 - so AIDs still look random, like the ones the generator makes.
+  * A permuted AID can still land on an account the generator loaded; callers
+  * insert with ON CONFLICT DO NOTHING and take another ID if that happens.
+  *
+  * Date: 18 October 2026
+  */
+
+package dbase;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+public class AidAllocator {
+  // BLOCK is the number of IDs reserved per nextval() (the sequence's step)
+  // SPACE is the number of 12-digit account IDs
+  // ROUNDS is the number of Feistel rounds, HALF the bits in each half
+  public static final int BLOCK = 64;
+  private static final long SPACE = 1000000000000L;
+  private static final int ROUNDS = 6, HALF = 20;
+  private static final long MASK = (1L << HALF) - 1;
+
+  // key seeds the permutation's round function
+  // next is the next counter value to hand out, and end the end of the block
+  private long key;
+  private long next, end;
+
+  public AidAllocator(long k) {
+    key = k;
+    next = end = 0;
+  }
+
+  /** next(c) returns a new account ID, reserving a new block of counter
+    * values from the sequence when the current one runs out.
+    *
+    * @param c The connection to reserve blocks with
+    * @return An account ID no other call (in any session) returns */
+
+  public synchronized long next(Conn c) throws SQLException {
+    if (next == end) {
+      ResultSet rs = c.query("SELECT nextval('\"Account_AID_Seq\"')");
+      rs.next();
+      next = rs.getLong(1);
+      end = next + BLOCK;
+      rs.close();
+    }
+    return permute(next++);
+  }
+
+  /** permute(n) maps n onto the 12-digit numbers through the Feistel network,
+    * walking through the cycle until the result falls inside the space. */
+
+  private long permute(long n) {
+    n %= SPACE;
+    do { n = encrypt(n); } while(n >= SPACE);
+    return n;
+  }
+
+  private long encrypt(long n) {
+    long l = n >>> HALF, r = n & MASK;
+
+    for(int i=0; i<ROUNDS; i++) {
+      long tmp = r;
+      r = l ^ (mix(key + i*0x9E3779B97F4A7C15L + r) & MASK);
+      l = tmp;
+    }
+
+    return (l << HALF) | r;
+  }
+
+  /** mix(z) is the splitmix64 finalizer, used as the round function */
+
+  private static long mix(long z) {
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+}
@@ -1,6 +1,7 @@
 /**
   * CID is a simple class that pairs together identifiers for customers, including
-  * both numerical identifiers and full name identifiers.
+  * both numerical identifiers and full name identifiers. Customers are looked
+  * up by every ID at once with WHERE and getArgs().
   *
   * Author: Matthew Morgan
   * Date: 6 November 2018
@@ -11,6 +12,13 @@ package dbase;
 import java.util.ArrayList;
 
 public class CID {
+  // WHERE is a condition matching customers by any of the IDs, with the
+  // values from getArgs() bound as three arrays, so that one statement (and
+  // one plan) serves lists of any length
+  public static final String WHERE =
+    "(\"CID\" = ANY(?::int[]) OR (\"Fname\", \"Lname\") IN "+
+    "(SELECT * FROM unnest(?::text[], ?::text[])))";
+
   // cidNum is a list of numerical customer IDs
   // cidStr is a list of first/last name pairs for customer IDs
   private ArrayList<Integer> cidNum;
@@ -49,41 +57,33 @@ public class CID {
     return true;
   }
 
-  /** getIn() returns an array that contains the tuples for numerical and
-    * string IDs for customers. Either entry may be an empty string based on if
-    * there are no numerical/name IDs. */
+  /** getArgs() returns the values to bind to WHERE: the numerical IDs, then
+    * the first names and last names of the name pairs (in the same order).
+    * Any may be empty, so WHERE is the same statement for any mix of IDs. */
 
-  public String[] getIn() {
-    return new String[] {getInNum(), getInStr()};
+  public Object[] getArgs() {
+    ArrayList<String[]> names = getNames();
+    String[] first = new String[names.size()], last = new String[names.size()];
+    for(int i=0; i<names.size(); i++) {
+      first[i] = names.get(i)[0];
+      last[i] = names.get(i)[1];
+    }
+    return new Object[] {cidNum.toArray(new Integer[0]), first, last};
   }
 
-  /** getInNum() returns a tuple containing all the numerical customer IDs. It
-    * returns an empty string if there are no numerical identifiers */
+  /** getNums() returns the numerical customer IDs */
 
-  public String getInNum() {
-    if (cidNum.size() == 0) return "";
+  public ArrayList<Integer> getNums() { return cidNum; }
 
-    String res = "";
-    for(Integer i : cidNum)
-      res += ", "+i.toString();
-    return "("+res.substring(2)+")";
-  }
-  
-  /** getInStr() returns a tuple containing smaller tuples for the first and
-    * last names stored in this CID's collection of names. It returns an
-    * empty string if there are no names. */
+  /** getNames() returns the first/last name pairs, each as a two-entry array */
 
-  public String getInStr() {
-    if (cidStr.size() == 0) return "";
-
-    String res = "";
+  public ArrayList<String[]> getNames() {
+    ArrayList<String[]> L = new ArrayList<>();
     for(String s : cidStr) {
-      String[] name = s.split(" ");
-      for(String n : name) { n = n.replace("'","''"); }
-
-      res += ", ('"+name[0]+"','"+name[1]+"')";
+      String[] name = s.trim().split(" +");
+      L.add(new String[] {name[0], name[1]});
     }
-    return "("+res.substring(2)+")";
+    return L;
   }
 
   /** numIDS() returns the number of customer IDs stored in this CID.
@@ -0,0 +1,145 @@
+/**
+  * Cache is a bounded, read-through cache of values keyed by ID. It holds at
+  * most 'size' entries, evicting the least recently used, and an entry older
+  * than its time to live is loaded again rather than returned.
+  *
+  * Values are loaded in bulk: getAll() looks up every key it can in the
+  * cache, and loads the rest with one call to the loader (one query for any
+  * number of misses). Keys the loader leaves out aren't cached, so a loader
+  * that wants a key's absence cached returns an empty value for it instead.
+  * Loads run outside the cache's lock, so a load that an eviction happened
+  * during isn't cached (what it read may be what was evicted), only returned.
+  *
+  * Date: 18 October 2026
+  */
+
+package dbase;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiPredicate;
+
+public class Cache<K,V> {
+  // Loader loads the values of a set of keys; keys it leaves out have none
+  // and aren't cached
+  public interface Loader<K,V> { Map<K,V> load(Collection<K> keys) throws SQLException; }
+
+  // Entry is a cached value and when (nanoseconds) it was loaded
+  private static class Entry<V> {
+    final V val;
+    final long loaded;
+    Entry(V v) { val = v; loaded = System.nanoTime(); }
+  }
+
+  // name names the cache in its statistics
+  // size is the most entries held, and ttl how long (ns) an entry lives
+  // map holds the entries in access order (least recently used first)
+  private final String name;
+  private final int size;
+  private final long ttl;
+  private final LinkedHashMap<K,Entry<V>> map;
+
+  // Statistics: lookups found and missed, entries expired, and entries
+  // evicted (for space, or because what they hold changed)
+  private long hits, misses, expired, evicted;
+
+  // gen counts the evictions asked for (of a key, or by predicate), whether
+  // or not anything was cached, so a load can tell if one happened during it
+  private long gen;
+
+  public Cache(String n, int s, long ttlMs) {
+    name = n;
+    size = s;
+    ttl = ttlMs * 1000000L;
+    map = new LinkedHashMap<K,Entry<V>>(16, 0.75f, true) {
+      protected boolean removeEldestEntry(Map.Entry<K,Entry<V>> e) {
+        if (size() <= size) { return false; }
+        evicted++;
+        return true;
+      }
+    };
+  }
+
+  /** get(key, l) returns the value of the key, loading it if it isn't cached.
+    *
+    * @return The value, or null if the loader has none */
+
+  public V get(K key, Loader<K,V> l) throws SQLException {
+    return getAll(Collections.singletonList(key), l).get(key);
+  }
+
+  /** getAll(keys, l) returns the values of the keys, loading every key that
+    * isn't cached (or has expired) in one call to the loader.
+    *
+    * @param keys The keys to look up
+    * @param l The loader of missing values
+    * @return The values found, by key (keys without a value are left out) */
+
+  public Map<K,V> getAll(Collection<K> keys, Loader<K,V> l) throws SQLException {
+    LinkedHashMap<K,V> res = new LinkedHashMap<>();
+    ArrayList<K> miss = new ArrayList<>();
+    long at;
+
+    synchronized(this) {
+      at = gen;
+      long now = System.nanoTime();
+      for(K k : keys) {
+        Entry<V> e = map.get(k);
+        if (e != null && now - e.loaded > ttl) { map.remove(k); expired++; e = null; }
+
+        if (e != null) { hits++; res.put(k, e.val); }
+        else if (!miss.contains(k)) { misses++; miss.add(k); }
+      }
+    }
+
+    if (!miss.isEmpty()) {
+      Map<K,V> got = l.load(miss);
+      synchronized(this) {
+        if (gen == at)
+          for(Map.Entry<K,V> e : got.entrySet()) { map.put(e.getKey(), new Entry<>(e.getValue())); }
+      }
+      res.putAll(got);
+    }
+    return res;
+  }
+
+  /** evict(key) drops the key's entry, if cached */
+
+  public synchronized void evict(K key) {
+    gen++;
+    if (map.remove(key) != null) { evicted++; }
+  }
+
+  /** evictIf(p) drops every entry the predicate holds for */
+
+  public synchronized void evictIf(BiPredicate<K,V> p) {
+    gen++;
+    for(Iterator<Map.Entry<K,Entry<V>>> i = map.entrySet().iterator(); i.hasNext(); ) {
+      Map.Entry<K,Entry<V>> e = i.next();
+      if (p.test(e.getKey(), e.getValue().val)) { i.remove(); evicted++; }
+    }
+  }
+
+  /** clear() drops every entry */
+
+  public synchronized void clear() {
+    gen++;
+    evicted += map.size();
+    map.clear();
+  }
+
+  /** getStats() returns a summary of the cache's lookups and evictions */
+
+  public synchronized String getStats() {
+    long n = hits + misses;
+    return String.format(
+      "%s %d/%d, %d hits, %d misses (%.0f%% hit), %d expired, %d evicted",
+      name, map.size(), size, hits, misses, n == 0 ? 0.0 : 100.0 * hits / n, expired, evicted
+    );
+  }
+}
@@ -2,21 +2,68 @@
   * Conn is the central handler of connections to the database, and is the
   * only way to get a prepared statement for a connection.
   *
+  * Connections come from a bounded pool (see Pool), sized 1 by default, which
+  * behaves like the single connection Conn used to hold - except that a
+  * connection the server dropped is replaced on the next borrow. Work is done
+  * under a Lease: lease() borrows a connection for the current thread, and
+  * genQuery() prepares statements on the current thread's lease.
+  *
+  * Commands run SQL through query() and update(), which take a template with
+  * '?' for every value and the values to bind. Statements are cached per
+  * connection by template (see Statements), so repeated lookups by AID, CID,
+  * or card number reuse a statement the server has already planned.
+  *
+  * Other Apps' changes to cached rows are heard by a Listener, which evicts
+  * them from the cache (see AccountCache) and drops the recent postings of
+  * accounts they posted to (see Recent).
+  *
+  * Customers are identified through customers() (see Customers), whose name
+  * index is warmed on connecting if setWarmNames() asked for it.
+  *
+  * Credits and debits made one at a time are submitted to the posting queue
+  * (see postings()), which commits them in groups.
+  *
   * Author: Matthew Morgan
   * Date: 6 November 2018
   */
 
 package dbase;
 
-import java.sql.DriverManager;
-import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.util.Properties;
 
 public class Conn {
-  private Connection con = null;
+  // RETRIES is the number of times transact() reruns work that was aborted
+  public static final int RETRIES = 5;
+
+  // pool is the pool connections are borrowed from, or null if not connected
+  // size is the number of connections the pool may hold
+  // current holds the lease of each thread doing work, if any
+  // cache is the number of statements cached per connection, and threshold
+  //   the number of runs before the driver prepares a statement on the server
+  private Pool pool = null;
+  private int size = 1, cache = 64, threshold = 2;
+  private boolean warm = false;
   private String db, pass, user;
+  private final ThreadLocal<Lease> current = new ThreadLocal<>();
+
+  // aids allocates the IDs of new accounts
+  // accts caches account summaries, owners, and cards
+  // custs resolves customers by CID or name
+  // recent holds the last postings to accounts tellers have looked at
+  private final AidAllocator aids = new AidAllocator(0x3700DB5L);
+  private final AccountCache accts = new AccountCache(this);
+  private final Customers custs = new Customers(this);
+  private final Recent recent = new Recent(this);
+
+  // postings is the queue credits and debits are submitted to, if connected
+  // shards keeps the balances of hot accounts, if connected
+  // listener evicts what other Apps change from the cache, if connected
+  private PostingQueue postings = null;
+  private Shards shards = null;
+  private Listener listener = null;
 
   /** Public constructor Con(d,p,s) returns a Con instance with the database and
     * user credentials provided. It does NOT attempt to make a connection.
@@ -35,23 +82,55 @@ public class Conn {
   public void setDB(String d) { db = d; }
   public void setUser(String u) { user = u; }
   public void setPass(String p) { pass = p; }
+  public void setPoolSize(int n) { size = n; }
+  public void setStmtCache(int n) { cache = n; }
+  public void setPrepareThreshold(int n) { threshold = n; }
+  public void setWarmNames(boolean w) { warm = w; }
+
+  public int getPoolSize() { return size; }
 
   /** hasConnection() returns true if this Connection instance is connected to
     * a database. */
 
-  public boolean hasConnection() { return con != null; }
+  public boolean hasConnection() { return pool != null; }
 
   /** connect() attempts to connect this Connection instance to a PostgreSQL
-    * database, showing an error message if failure occurs. */
+    * database, showing an error message if failure occurs. One connection is
+    * borrowed and returned straight away, so a bad database or credentials
+    * are reported here rather than by the first command. */
 
+  // The lease shards and names are loaded on is only held, never referenced
+  @SuppressWarnings("try")
   public void connect() throws SQLException {
     if (!this.hasConnection()) {
       Properties pr = new Properties();
       pr.setProperty("user", user);
-      pr.setProperty("pass", pass);
+      pr.setProperty("password", pass);
       pr.setProperty("ApplicationName", "3700 DBMS");
 
-      con = DriverManager.getConnection("jdbc:postgresql://localhost:5432/"+db, pr);
+      // Strings are bound untyped, so the server casts them to the type of
+      // the column they're compared to or stored in (dates, enumerations, ...)
+      pr.setProperty("stringtype", "unspecified");
+      pr.setProperty("prepareThreshold", Integer.toString(threshold));
+
+      String url = "jdbc:postgresql://localhost:5432/"+db;
+      Pool p = new Pool(url, pr, size);
+      p.setStmtCache(cache);
+      try { p.release(p.borrow(), false); }
+      catch(SQLException e) { p.close(); throw e; }
+      pool = p;
+
+      // The queue commits (and hot accounts are folded) on a connection of
+      // its own, if the pool has a spare
+      postings = new PostingQueue(this, size > 1);
+      shards = new Shards(this, size > 1);
+      try (Lease l = lease()) {
+        shards.load();
+        if (warm) { custs.warm(); }
+      }
+
+      listener = new Listener(url, pr, p, accts, recent, custs);
+      listener.start();
     }
     else
       System.out.println("Connection already has a connection to a DB");
@@ -61,22 +140,170 @@ public class Conn {
 
   public void disconnect() throws SQLException {
     if (this.hasConnection()) {
-      con.close();
-      con = null;
+      postings.close();
+      shards.close();
+      listener.close();
+      postings = null;
+      shards = null;
+      listener = null;
+      pool.close();
+      pool = null;
     }
     else
       System.out.println("Connection does not have a connection to a DB");
   }
 
-  /** genQuery(q) returns prepared statement instance generated from the
-    * database connection of this instance.
+  /** lease() borrows a connection for work on the current thread,
+    * or joins the lease the thread already holds. Close it when the work is
+    * done (try-with-resources).
+    *
+    * @return The current thread's lease */
+
+  public Lease lease() throws SQLException {
+    if (!this.hasConnection())
+      throw new SQLException("Connection does not have a connection to a DB");
+
+    Lease l = current.get();
+    if (l != null) { return l.join(); }
+
+    long start = System.nanoTime();
+    l = new Lease(this, pool.borrow(), System.nanoTime() - start);
+    current.set(l);
+    return l;
+  }
+
+  /** release(l, p, broken) returns a lease's connection to the pool */
+
+  void release(Lease l, Pool.Pooled p, boolean broken) {
+    if (current.get() == l) { current.remove(); }
+    if (pool != null) { pool.release(p, broken); }
+    else {
+      try { p.con.close(); } catch(SQLException e) {}
+    }
+  }
+
+  /** begin() begins a unit of work on the current thread's lease (see Work),
+    * leasing a connection if the thread holds none. Close it when done.
+    *
+    * @return The work begun */
+
+  public Work begin() throws SQLException { return new Work(lease()); }
+
+  /** transact(b) runs the body of work given in a transaction, committing it
+    * if the body returns. If the server aborts it for a serialization failure
+    * or deadlock, the body is run again (up to RETRIES times, backing off a
+    * little longer each time). Nested in other work, it runs the body once;
+    * the outermost work does the retrying.
+    *
+    * @param b The body of work to run
+    * @return What the body returns */
+
+  public <T> T transact(Work.Body<T> b) throws SQLException {
+    for(int i=0; ; i++) {
+      boolean nested = false;
+
+      try (Work w = begin()) {
+        nested = w.isNested();
+        T res = b.run(w);
+        w.commit();
+        return res;
+      }
+      catch(SQLException e) {
+        if (nested || i >= RETRIES || !Work.isRetryable(e)) { throw e; }
+      }
+
+      try { Thread.sleep((long)((1 << i) * (1 + Math.random()) * 5)); }
+      catch(InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new SQLException("Interrupted retrying a transaction");
+      }
+    }
+  }
+
+  /** nextAID() allocates the ID of a new account (see AidAllocator) */
+
+  public long nextAID() throws SQLException { return aids.next(this); }
+
+  /** postings() returns the queue credits and debits are submitted to (see
+    * PostingQueue), or null if not connected. */
+
+  public PostingQueue postings() { return postings; }
+
+  /** accounts() returns the cache of account summaries, owners, and cards
+    * (see AccountCache). */
+
+  public AccountCache accounts() { return accts; }
+
+  /** recent() returns the last postings to accounts (see Recent) */
+
+  public Recent recent() { return recent; }
+
+  /** customers() returns the resolver of customers by CID or name (see
+    * Customers). */
+
+  public Customers customers() { return custs; }
+
+  /** shards() returns the keeper of hot accounts' balances (see Shards), or
+    * null if not connected. */
+
+  public Shards shards() { return shards; }
+
+  /** getStats() returns the pool's checkout statistics, the posting queue's
+    * commit statistics, the hot accounts' fold statistics, the caches' hit
+    * and invalidation statistics (recent postings included), and the size of
+    * the customer name index, or null if not connected. */
+
+  public String getStats() {
+    return pool == null ? null : pool.getStats()+"\nPosting queue: "+postings.getStats()+
+      "\nShards: "+shards.getStats()+"\nCache: "+accts.getStats()+
+      "\nCache listener: "+listener.getStats()+"\nRecent postings: "+recent.getStats()+
+      "\nCustomers: "+custs.getStats();
+  }
+
+  /** query(sql, args) runs a query on the current thread's lease (see
+    * Lease.query).
+    *
+    * @param sql The SQL template, with '?' for every parameter
+    * @param args The values of the parameters
+    * @return The results of the query */
+
+  public ResultSet query(String sql, Object... args) throws SQLException {
+    return leased().query(sql, args);
+  }
+
+  /** update(sql, args) runs an update on the current thread's lease (see
+    * Lease.update).
+    *
+    * @param sql The SQL template, with '?' for every parameter
+    * @param args The values of the parameters
+    * @return The number of rows affected */
+
+  public int update(String sql, Object... args) throws SQLException {
+    return leased().update(sql, args);
+  }
+
+  /** leased() returns the current thread's lease, or throws if it holds none */
+
+  private Lease leased() throws SQLException {
+    if (!this.hasConnection())
+      throw new SQLException("Connection does not have a connection to a DB");
+
+    Lease l = current.get();
+    if (l == null)
+      throw new SQLException("No connection is leased on this thread");
+    return l;
+  }
+
+  /** genQuery(q) returns a new (uncached) prepared statement for the query,
+    * for SQL that isn't worth caching - such as the scripts CmdReset runs. It
+    * is prepared on the connection leased by the current thread.
     *
     * @param q The query to generate a statement for
-    * @return The new PreparedStatement, or null if no connection exists */
+    * @return The new PreparedStatement, or null if no connection exists
+    * @throws SQLException If the current thread holds no lease */
 
   public PreparedStatement genQuery(String q) throws SQLException {
-    if (this.hasConnection())
-      return con.prepareStatement(q);
-    return null;
+    if (!this.hasConnection()) { return null; }
+    return leased().genQuery(q);
   }
-}
\ No newline at end of file
+}
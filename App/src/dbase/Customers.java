@@ -0,0 +1,281 @@
+/**
+  * Customers resolves what a teller types to identify a customer - a CID, a
+  * full name, or part of one - to the customers it could mean. Names are
+  * matched without regard to case, in three steps, stopping at the first
+  * that finds anyone:
+  * + Exactly: every way of splitting the words into a first and last name
+  *   (so "Mary Ann Smith" finds Mary Ann Smith and Mary Ann-Smith alike)
+  * + By prefix: the words begin the full name, or a last name ("john sm",
+  *   "mary a", "smi")
+  * + Fuzzily: names most similar by trigrams (typos, missing letters), if
+  *   the server has pg_trgm
+  * Each step is backed by an index in create.sql, so none scans Customer.
+  *
+  * Prefix searches can also be answered from memory: warm() loads every
+  * customer's name into an ordered index (by full name, and by last name)
+  * that's kept up with the App's own inserts and changes. Other Apps' changes
+  * are heard of by the Listener, and those customers are read again before
+  * the index is next used. A prefix the index finds no one for is still
+  * looked for in the database.
+  *
+  * Date: 18 October 2026
+  */
+
+package dbase;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+public class Customers {
+  // Match is a customer a lookup found
+  public static class Match {
+    public final int cid;
+    public final String fname, lname, ssn, phone, dob;
+
+    public Match(ResultSet r) throws SQLException {
+      cid = r.getInt("CID");
+      fname = r.getString("Fname");
+      lname = r.getString("Lname");
+      ssn = r.getString("SSN");
+      phone = r.getString("Con_Phone");
+      dob = r.getString("DOB");
+    }
+
+    public String toString() {
+      return String.format("(%4d) %s %s, SSN %s, DOB %s, Phone %s", cid, fname, lname, ssn, dob, phone);
+    }
+  }
+
+  // LIMIT is the most customers a lookup returns
+  // COLS are the columns a Match is read from
+  public static final int LIMIT = 25;
+  public static final String COLS =
+    "\"CID\", \"Fname\", \"Lname\", \"SSN\", \"Con_Phone\", \"DOB\"";
+
+  private static final String
+    BY_CID = "SELECT "+COLS+" FROM \"Customer\" WHERE \"CID\" = ?",
+    EXACT =
+      "SELECT "+COLS+" FROM \"Customer\" WHERE lower(\"Fname\") = ? AND lower(\"Lname\") = ? "+
+      "ORDER BY \"CID\" LIMIT ?",
+    PREFIX =
+      "SELECT "+COLS+" FROM \"Customer\" WHERE lower(\"Fname\") = ? AND lower(\"Lname\") LIKE ? "+
+      "ORDER BY \"CID\" LIMIT ?",
+    PREFIX_ONE =
+      "SELECT "+COLS+" FROM \"Customer\" WHERE lower(\"Fname\") LIKE ? "+
+      "UNION SELECT "+COLS+" FROM \"Customer\" WHERE lower(\"Lname\") LIKE ? "+
+      "ORDER BY \"CID\" LIMIT ?",
+    FUZZY =
+      "SELECT "+COLS+" FROM \"Customer\" WHERE lower(\"Fname\"||' '||\"Lname\") % ? "+
+      "ORDER BY similarity(lower(\"Fname\"||' '||\"Lname\"), ?) DESC, \"CID\" LIMIT ?",
+    ALL = "SELECT "+COLS+" FROM \"Customer\"";
+
+  // con is the handler lookups are made through
+  // names is the in-memory name index, or null if it isn't warmed; keys are
+  //   lower-cased names followed by '\0' and the CID, so they're unique
+  // known holds the customers in the name index, by CID
+  // stale holds the CIDs other Apps changed, to be read again, and rewarm is
+  //   set if the whole index must be loaded again
+  // fuzzy is cleared if the server can't do trigram searches
+  private Conn con;
+  private volatile ConcurrentSkipListMap<String,Match> names = null;
+  private final ConcurrentHashMap<Integer,Match> known = new ConcurrentHashMap<>();
+  private final Set<Integer> stale = ConcurrentHashMap.newKeySet();
+  private volatile boolean rewarm = false;
+  private volatile boolean fuzzy = true;
+
+  Customers(Conn c) { con = c; }
+
+  /** resolve(in) returns the customers the input could mean: the customer
+    * with the CID, or customers matching the name (see above).
+    *
+    * @param in A CID, or a full or partial name
+    * @return The customers matched, at most LIMIT */
+
+  public List<Match> resolve(String in) throws SQLException {
+    in = in.trim().toLowerCase();
+    ArrayList<Match> res = new ArrayList<>();
+    if (in.isEmpty()) { return res; }
+
+    if (in.matches("[0-9]+")) {
+      ResultSet r = con.query(BY_CID, Integer.parseInt(in));
+      while(r.next()) { res.add(new Match(r)); }
+      r.close();
+      return res;
+    }
+
+    String[] w = in.split(" +");
+    res = exact(w);
+    if (res.isEmpty()) { res = prefix(w); }
+    if (res.isEmpty()) { res = fuzzy(String.join(" ", w)); }
+    return res;
+  }
+
+  /** exact(w) finds customers named by the words, split into first and last
+    * names every way they can be. */
+
+  private ArrayList<Match> exact(String[] w) throws SQLException {
+    LinkedHashMap<Integer,Match> res = new LinkedHashMap<>();
+    for(int i=1; i<w.length; i++)
+      collect(res, con.query(EXACT, join(w, 0, i), join(w, i, w.length), LIMIT));
+    return new ArrayList<>(res.values());
+  }
+
+  /** prefix(w) finds customers whose name begins with the words: a full name
+    * (or last name) beginning with all of them, which the database finds as
+    * a first or last name beginning with all of them, or a first name of the
+    * words before a split and a last name beginning with the words after.
+    * The name index is asked first, if warmed, and the database only if the
+    * index finds no one. */
+
+  private ArrayList<Match> prefix(String[] w) throws SQLException {
+    String all = String.join(" ", w);
+    LinkedHashMap<Integer,Match> res = new LinkedHashMap<>();
+
+    if (names != null) { refresh(); }
+    ConcurrentSkipListMap<String,Match> idx = names;
+    if (idx != null) {
+      for(Match m : idx.subMap(all, all+Character.MAX_VALUE).values()) {
+        res.putIfAbsent(m.cid, m);
+        if (res.size() >= LIMIT) { break; }
+      }
+      if (!res.isEmpty()) { return new ArrayList<>(res.values()); }
+    }
+
+    collect(res, con.query(PREFIX_ONE, like(all), like(all), LIMIT));
+    for(int i=1; i<w.length && res.size() < LIMIT; i++)
+      collect(res, con.query(PREFIX, join(w, 0, i), like(join(w, i, w.length)), LIMIT));
+    return new ArrayList<>(res.values());
+  }
+
+  /** fuzzy(name) finds the customers with the names most similar to the one
+    * given, by trigrams. If the server lacks pg_trgm (undefined function or
+    * operator), fuzzy searches are turned off. */
+
+  private ArrayList<Match> fuzzy(String name) throws SQLException {
+    LinkedHashMap<Integer,Match> res = new LinkedHashMap<>();
+    if (!fuzzy) { return new ArrayList<>(); }
+
+    try { collect(res, con.query(FUZZY, name, name, LIMIT)); }
+    catch(SQLException e) {
+      if (!"42883".equals(e.getSQLState())) { throw e; }
+      fuzzy = false;
+    }
+    return new ArrayList<>(res.values());
+  }
+
+  /** warm() loads every customer's name into the in-memory name index, which
+    * prefix searches use from then on. */
+
+  public void warm() throws SQLException {
+    ConcurrentSkipListMap<String,Match> idx = new ConcurrentSkipListMap<>();
+    rewarm = false;
+    stale.clear();
+    known.clear();
+    ResultSet r = con.query(ALL);
+    while(r.next()) { index(idx, new Match(r)); }
+    r.close();
+    names = idx;
+  }
+
+  /** isWarm() returns true if prefix searches are answered from memory */
+
+  public boolean isWarm() { return names != null; }
+
+  /** remember(m) adds (or updates) a customer in the name index, if warmed */
+
+  public void remember(Match m) {
+    ConcurrentSkipListMap<String,Match> idx = names;
+    if (idx == null) { return; }
+    forget(idx, m.cid);
+    index(idx, m);
+  }
+
+  /** changed(cid) reads a customer again after a change, and updates the
+    * name index with it (if warmed). */
+
+  public void changed(int cid) throws SQLException {
+    if (names == null) { return; }
+
+    ResultSet r = con.query(BY_CID, cid);
+    if (r.next()) { remember(new Match(r)); }
+    else { forget(names, cid); }
+    r.close();
+  }
+
+  /** evict(cid) marks a customer another App changed (or added, or deleted)
+    * to be read again before the name index is next used. The Listener
+    * hears of the change, but holds no lease to read the customer with. */
+
+  public void evict(int cid) { if (names != null) { stale.add(cid); } }
+
+  /** evictAll() marks the whole name index to be loaded again before it's
+    * next used (another App changed too many customers to name, or changes
+    * may have been missed). */
+
+  public void evictAll() { if (names != null) { rewarm = true; } }
+
+  /** getStats() returns the size of the name index, if warmed */
+
+  public String getStats() {
+    ConcurrentSkipListMap<String,Match> idx = names;
+    return (idx == null ? "name index not warmed" : idx.size()+" names indexed")+
+      (fuzzy ? "" : ", fuzzy search unavailable");
+  }
+
+  /****************************************************************************/
+
+  /** refresh() brings the name index up to date with other Apps' changes,
+    * reading the customers marked stale (or all, if it's to be rewarmed). */
+
+  private void refresh() throws SQLException {
+    if (rewarm) { warm(); return; }
+
+    for(Iterator<Integer> i = stale.iterator(); i.hasNext(); ) {
+      int cid = i.next();
+      i.remove();
+      changed(cid);
+    }
+  }
+
+  private void index(ConcurrentSkipListMap<String,Match> idx, Match m) {
+    String f = m.fname.toLowerCase(), l = m.lname.toLowerCase();
+    idx.put(f+" "+l+"\0"+m.cid, m);
+    idx.put(l+"\0"+m.cid, m);
+    known.put(m.cid, m);
+  }
+
+  private void forget(ConcurrentSkipListMap<String,Match> idx, int cid) {
+    Match m = known.remove(cid);
+    if (m == null) { return; }
+
+    String f = m.fname.toLowerCase(), l = m.lname.toLowerCase();
+    idx.remove(f+" "+l+"\0"+cid);
+    idx.remove(l+"\0"+cid);
+  }
+
+  private static void collect(Map<Integer,Match> res, ResultSet r) throws SQLException {
+    while(r.next()) {
+      Match m = new Match(r);
+      res.putIfAbsent(m.cid, m);
+    }
+    r.close();
+  }
+
+  private static String join(String[] w, int from, int to) {
+    return String.join(" ", java.util.Arrays.copyOfRange(w, from, to));
+  }
+
+  /** like(s) returns a LIKE pattern matching strings beginning with s */
+
+  private static String like(String s) {
+    return s.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_")+"%";
+  }
+}
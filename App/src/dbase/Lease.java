@@ -0,0 +1,188 @@
+/**
+  * Lease is a connection borrowed from Conn's pool for a stretch of work on
+  * one thread (such as a command run from the main prompt). It opens no
+  * transaction; units of work (see Work) run on it. It's meant to be used in
+  * a try-with-resources block; closing it hands the connection back.
+  *
+  * A thread holds at most one lease at a time: asking Conn for a lease while
+  * one is held gives back the same lease, and only the outermost close()
+  * returns the connection. This keeps nested work (like CmdAccount creating
+  * a customer through CmdCustomer) on one connection, rather than borrowing a
+  * second one and deadlocking a pool of size 1.
+  *
+  * Date: 18 October 2026
+  */
+
+package dbase;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+
+public class Lease implements AutoCloseable {
+  // conn is the handler the lease came from, and p the connection leased
+  // depth is the number of times the lease has been taken without closing
+  // broken is set if the connection should not go back into the pool
+  // taken is when (nanoseconds) the connection was handed out, and waited
+  //   how long the borrow took
+  private Conn conn;
+  private Pool.Pooled p;
+  private int depth;
+  private boolean broken;
+  private long taken, waited;
+
+  // commits holds what to run once the lease's current work commits
+  private ArrayList<Runnable> commits = new ArrayList<>();
+
+  Lease(Conn c, Pool.Pooled pc, long w) {
+    conn = c;
+    p = pc;
+    depth = 1;
+    broken = false;
+    taken = System.nanoTime();
+    waited = w;
+  }
+
+  /** join() takes the lease again for nested work on the same thread */
+
+  Lease join() { depth++; return this; }
+
+  /** genQuery(q) returns a prepared statement on the leased connection.
+    *
+    * @param q The query to generate a statement for
+    * @return The new PreparedStatement */
+
+  public PreparedStatement genQuery(String q) throws SQLException {
+    try { return connection().prepareStatement(q); }
+    catch(SQLException e) { check(e); throw e; }
+  }
+
+  /** prepare(sql, args) returns the leased connection's cached statement for
+    * the SQL template, with the arguments bound to its parameters in order.
+    * The statement belongs to the cache, so callers must not close it.
+    *
+    * @param sql The SQL template, with '?' for every parameter
+    * @param args The values of the parameters (null binds an SQL NULL)
+    * @return The prepared statement, ready to execute */
+
+  public PreparedStatement prepare(String sql, Object... args) throws SQLException {
+    if (p == null) { throw new SQLException("The lease has been closed"); }
+
+    try {
+      PreparedStatement ps = p.stmts.get(sql);
+      for(int i=0; i<args.length; i++) { bind(ps, i+1, args[i]); }
+      return ps;
+    }
+    catch(SQLException e) { check(e); throw e; }
+  }
+
+  /** query(sql, args) runs the SQL template as a query with the arguments
+    * given, and returns its results. Close the results when done with them;
+    * running the same template again also closes them.
+    *
+    * @param sql The SQL template, with '?' for every parameter
+    * @param args The values of the parameters
+    * @return The results of the query */
+
+  public ResultSet query(String sql, Object... args) throws SQLException {
+    PreparedStatement ps = prepare(sql, args);
+    try { return ps.executeQuery(); }
+    catch(SQLException e) { check(e); throw e; }
+  }
+
+  /** update(sql, args) runs the SQL template as an update (or insert, etc)
+    * with the arguments given.
+    *
+    * @param sql The SQL template, with '?' for every parameter
+    * @param args The values of the parameters
+    * @return The number of rows affected */
+
+  public int update(String sql, Object... args) throws SQLException {
+    PreparedStatement ps = prepare(sql, args);
+    try { return ps.executeUpdate(); }
+    catch(SQLException e) { check(e); throw e; }
+  }
+
+  /** bind(ps, i, v) binds a value to parameter i by its Java type. Strings
+    * are sent untyped (see Conn), so the server casts them to their column's
+    * type. Arrays of Long, Integer, and String are sent as SQL arrays (for
+    * matching against with '= ANY(?)'). */
+
+  private void bind(PreparedStatement ps, int i, Object v) throws SQLException {
+    if (v == null) { ps.setNull(i, Types.OTHER); }
+    else if (v instanceof String) { ps.setString(i, (String)v); }
+    else if (v instanceof Integer) { ps.setInt(i, (Integer)v); }
+    else if (v instanceof Long) { ps.setLong(i, (Long)v); }
+    else if (v instanceof Double) { ps.setDouble(i, (Double)v); }
+    else if (v instanceof Boolean) { ps.setBoolean(i, (Boolean)v); }
+    else if (v instanceof LocalDate) { ps.setDate(i, Date.valueOf((LocalDate)v)); }
+    else if (v instanceof Long[]) { ps.setArray(i, p.con.createArrayOf("bigint", (Long[])v)); }
+    else if (v instanceof Integer[]) { ps.setArray(i, p.con.createArrayOf("integer", (Integer[])v)); }
+    else if (v instanceof String[]) { ps.setArray(i, p.con.createArrayOf("text", (String[])v)); }
+    else { ps.setObject(i, v); }
+  }
+
+  /** connection() returns the leased connection */
+
+  public Connection connection() throws SQLException {
+    if (p == null) { throw new SQLException("The lease has been closed"); }
+    return p.con;
+  }
+
+  /** check(e) marks the lease broken if the error means the connection was
+    * lost (SQL state class 08), so it isn't reused once it's returned. */
+
+  public void check(SQLException e) {
+    String st = e.getSQLState();
+    if (st != null && st.startsWith("08")) { broken = true; }
+  }
+
+  /** afterCommit(r) holds r to run once the outermost work commits */
+
+  void afterCommit(Runnable r) { commits.add(r); }
+
+  /** held() returns the number of things held to run after the commit */
+
+  int held() { return commits.size(); }
+
+  /** drop(n) drops what was held after the first n (what work rolled back to
+    * a savepoint had held) */
+
+  void drop(int n) {
+    while(commits.size() > n) { commits.remove(commits.size()-1); }
+  }
+
+  /** ended(committed) runs what was held for the work just ended (if it
+    * committed) or drops it (if it rolled back). */
+
+  void ended(boolean committed) {
+    ArrayList<Runnable> run = commits;
+    commits = new ArrayList<>();
+    if (committed)
+      for(Runnable r : run) { r.run(); }
+  }
+
+  /** getWaited() returns how long (ms) the lease waited for its connection */
+
+  public double getWaited() { return waited / 1e6; }
+
+  /** getHeld() returns how long (ms) the connection has been leased */
+
+  public double getHeld() { return (System.nanoTime() - taken) / 1e6; }
+
+  /** close() gives up this hold on the lease, returning the connection to the
+    * pool once the outermost hold is given up. */
+
+  public void close() {
+    if (p == null || --depth > 0) { return; }
+
+    Pool.Pooled pc = p;
+    p = null;
+    conn.release(this, pc, broken);
+  }
+}
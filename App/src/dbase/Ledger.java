@@ -0,0 +1,205 @@
+/**
+  * Ledger is the posting engine: every change to an account's balance goes
+  * through it, along with the Transaction row recording the change.
+  *
+  * A posting is one statement: a conditional UPDATE of the balance (which
+  * for a debit only matches if the balance covers the amount, and never
+  * matches a closed account) feeding the INSERT of the Transaction row. The
+  * UPDATE takes the account's row lock and reads the latest committed balance
+  * under it, so postings racing on one account queue up on the lock rather
+  * than losing each other's updates, and funds are checked against the
+  * balance actually being changed. Postings run as units of work (see
+  * Conn.transact), so postings made inside other work commit with it.
+  *
+  * Transfers touch two accounts, and lock both (lowest AID first) before
+  * posting to either, so two transfers between the same accounts in opposite
+  * directions can't deadlock.
+  *
+  * Hot accounts (see Shards) keep part of their balance in shards: credits to
+  * them update one shard rather than the Account row, and a shard that's gone
+  * missing (the account was retired elsewhere) falls back to the Account row.
+  *
+  * Date: 18 October 2026
+  */
+
+package dbase;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+public class Ledger {
+  // Declined is thrown for a posting that was refused (insufficient funds,
+  // closed or missing account); it isn't retried
+  public static class Declined extends SQLException {
+    private static final long serialVersionUID = 1L;
+
+    public Declined(String msg) { super(msg); }
+  }
+
+  // POST is the template of a posting; the condition on the account (COND)
+  // is filled in for credits and debits
+  private static final String POST =
+    "WITH A AS (UPDATE \"Account\" SET \"Balance\" = \"Balance\" + ? "+
+    "  WHERE \"AID\" = ? AND \"Date_Close\" IS NULL%s RETURNING \"AID\", \"Balance\"), "+
+    "T AS (INSERT INTO \"Transaction\"(\"AID\",\"Type\",\"Date\",\"Amount\",\"Rec_Route\","+
+    "  \"Rec_AID\",\"Desc\",\"isPending\") "+
+    "  SELECT \"AID\", ?, ?, ?, ?, ?, ?, ? FROM A RETURNING \"TID\") "+
+    "SELECT A.\"Balance\", T.\"TID\" FROM A, T";
+  private static final String
+    CREDIT = String.format(POST, ""),
+    DEBIT = String.format(POST, " AND \"Balance\" >= ?");
+
+  // SHARD is a credit to one shard of a hot account (see Shards); the balance
+  // returned adds the other shards and the Account balance
+  private static final String SHARD =
+    "WITH S AS (UPDATE \"Account_Shard\" SET \"Balance\" = \"Balance\" + ? "+
+    "  WHERE \"AID\" = ? AND \"Shard\" = ? AND EXISTS (SELECT 1 FROM \"Account\" "+
+    "  WHERE \"AID\" = ? AND \"Date_Close\" IS NULL) RETURNING \"AID\", \"Shard\", \"Balance\"), "+
+    "T AS (INSERT INTO \"Transaction\"(\"AID\",\"Type\",\"Date\",\"Amount\",\"Rec_Route\","+
+    "  \"Rec_AID\",\"Desc\",\"isPending\") "+
+    "  SELECT \"AID\", ?, ?, ?, ?, ?, ?, ? FROM S RETURNING \"TID\") "+
+    "SELECT S.\"Balance\" + (SELECT \"Balance\" FROM \"Account\" WHERE \"AID\" = S.\"AID\") + "+
+    "  (SELECT COALESCE(SUM(\"Balance\"), 0) FROM \"Account_Shard\" X "+
+    "  WHERE X.\"AID\" = S.\"AID\" AND X.\"Shard\" <> S.\"Shard\") AS \"Balance\", T.\"TID\" "+
+    "FROM S, T";
+
+  // LOCK locks a set of accounts in AID order. The lock doesn't block the
+  // key-share locks credits to shards take on the account (see Shards).
+  private static final String LOCK =
+    "SELECT \"AID\" FROM \"Account\" WHERE \"AID\" = ANY(?) ORDER BY \"AID\" FOR NO KEY UPDATE";
+
+  /** credit(c, aid, amt, route, rec, desc) credits the account, recording a
+    * pending CREDIT transaction.
+    *
+    * @return The account's new balance */
+
+  public static double credit(Conn c, long aid, double amt, String route, String rec,
+    String desc) throws SQLException {
+    return post(c, aid, amt, false, route, rec, desc);
+  }
+
+  /** debit(c, aid, amt, route, rec, desc) debits the account if its balance
+    * covers the amount, recording a pending DEBIT transaction.
+    *
+    * @return The account's new balance
+    * @throws Declined If the balance doesn't cover the amount */
+
+  public static double debit(Conn c, long aid, double amt, String route, String rec,
+    String desc) throws SQLException {
+    return post(c, aid, amt, true, route, rec, desc);
+  }
+
+  /** post(c, aid, amt, deb, route, rec, desc) posts a credit or debit of the
+    * (positive) amount to the account, and the Transaction recording it, in
+    * one statement and one commit.
+    *
+    * @param c The connection to post with
+    * @param aid The account posted to
+    * @param amt The amount posted; must be positive
+    * @param deb True for a debit, false for a credit
+    * @param route The routing number of the other party
+    * @param rec The account of the other party
+    * @param desc The description of the transaction
+    * @return The account's new balance
+    * @throws Declined If the account is closed or missing, or (for debits) the
+    *   balance doesn't cover the amount */
+
+  public static double post(Conn c, long aid, double amt, boolean deb, String route,
+    String rec, String desc) throws SQLException {
+    if (!(amt > 0)) { throw new Declined("Amount posted must be positive"); }
+
+    Shards sh = c.shards();
+    LocalDate day = LocalDate.now();
+    return c.transact(w -> {
+      w.afterCommit(() -> c.accounts().evictAccount(aid));
+
+      // Credits to a hot account go to one of its shards, and debits fold its
+      // shards in first, so funds are checked against the whole balance
+      if (!deb && sh.isHot(aid)) {
+        Double bal = balance(c, w, aid, day, amt, false, w.query(SHARD, amt, aid, sh.stripe(aid),
+          aid, "CREDIT", day, amt, route, rec, desc, true));
+        if (bal != null) { return bal; }
+        sh.forget(aid);
+      }
+      else if (deb && sh.isHot(aid)) { sh.fold(aid); }
+
+      Double bal = balance(c, w, aid, day, amt, deb, deb ?
+        w.query(DEBIT, -amt, aid, amt, "DEBIT", day, amt, route, rec, desc, true) :
+        w.query(CREDIT, amt, aid, "CREDIT", day, amt, route, rec, desc, true));
+      if (bal != null) { return bal; }
+
+      throw declined(w, aid, amt);
+    });
+  }
+
+  /** balance(c, w, aid, day, amt, deb, r) returns the balance a posting
+    * returned, or null if it matched no account (or shard), and closes the
+    * results. A posting made is added to the account's recent postings (see
+    * Recent) once the work commits. */
+
+  private static Double balance(Conn c, Work w, long aid, LocalDate day, double amt,
+    boolean deb, ResultSet r) throws SQLException {
+    try {
+      if (!r.next()) { return null; }
+      long tid = r.getLong("TID");
+      w.afterCommit(() -> c.recent().posted(aid, tid, day, amt, deb));
+      return r.getDouble("Balance");
+    }
+    finally { r.close(); }
+  }
+
+  /** transfer(c, from, to, amt, desc) moves the amount from one account to
+    * another: a DEBIT on 'from' and a CREDIT on 'to', committed together.
+    * Both accounts are locked in AID order first.
+    *
+    * @param c The connection to post with
+    * @param from The account debited
+    * @param to The account credited
+    * @param amt The amount moved; must be positive
+    * @param desc The description of both transactions
+    * @return The new balances of 'from' and 'to'
+    * @throws Declined If either account is closed or missing, or 'from' can't
+    *   cover the amount */
+
+  public static double[] transfer(Conn c, long from, long to, double amt,
+    String desc) throws SQLException {
+    if (from == to) { throw new Declined("An account can't transfer to itself"); }
+    if (!(amt > 0)) { throw new Declined("Amount posted must be positive"); }
+
+    return c.transact(w -> {
+      ResultSet r = w.query(LOCK, (Object)new Long[] {from, to});
+      int n = 0;
+      while(r.next()) { n++; }
+      r.close();
+      if (n < 2) { throw new Declined("Both accounts must exist"); }
+
+      String f = String.format("%012d", from), t = String.format("%012d", to);
+      return new double[] {
+        post(c, from, amt, true, "self", t, desc),
+        post(c, to, amt, false, "self", f, desc)
+      };
+    });
+  }
+
+  /** declined(w, aid, amt) works out why a posting matched no account, and
+    * returns the exception saying so. */
+
+  private static Declined declined(Work w, long aid, double amt) throws SQLException {
+    ResultSet r = w.query(
+      "SELECT \"Balance\", \"Date_Close\" FROM \"Account\" WHERE \"AID\" = ?", aid
+    );
+
+    try {
+      if (!r.next())
+        return new Declined("Account "+aid+" doesn't exist");
+      else if (r.getString("Date_Close") != null)
+        return new Declined("Account "+aid+" is closed");
+      else
+        return new Declined(String.format(
+          "Insufficient funds: balance $%.2f, debit $%.2f", r.getDouble("Balance"), amt
+        ));
+    }
+    finally { r.close(); }
+  }
+}
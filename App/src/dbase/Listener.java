@@ -0,0 +1,183 @@
+/**
+  * Listener keeps the App's caches fresh while other Apps change the same
+  * database. Triggers on the cached tables (see create.sql) announce every
+  * change on channel CHANNEL once it commits, naming the keys changed, and
+  * the listener evicts those keys from the AccountCache. An entry is then
+  * stale for only as long as the notification takes to arrive, rather than
+  * until it expires.
+  *
+  * Changes to accounts made by other Apps (told apart from the App's own by
+  * the server process that sent them, see Pool.isOwn) also drop the accounts'
+  * recent postings (see Recent); the App adds its own postings there itself.
+  * Likewise, customers other Apps change are marked to be read again into
+  * the name index (see Customers).
+  *
+  * The listener holds a connection of its own (outside the pool, since it's
+  * held for as long as the App runs). If it's lost, the listener connects
+  * again, and clears the caches, since changes made while it was away were
+  * never heard of.
+  *
+  * Date: 18 October 2026
+  */
+
+package dbase;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+public class Listener {
+  // CHANNEL is the channel changes are announced on
+  // WAIT is how long (ms) to wait for notifications before checking in
+  // RETRY is how long (ms) to wait before connecting again
+  public static final String CHANNEL = "cache_evict";
+  public static final int WAIT = 500, RETRY = 5000;
+
+  // url and props are where and how to connect
+  // pool is the App's pool, whose notifications are its own
+  // cache is the cache evicted from, recent the recent postings dropped, and
+  //   custs the customers whose name index is kept
+  // con is the listening connection, or null if not connected
+  // listened is set once the listener has been connected
+  // thread is the thread listening, and running is cleared to stop it
+  private String url;
+  private Properties props;
+  private Pool pool;
+  private AccountCache cache;
+  private Recent recent;
+  private Customers custs;
+  private volatile Connection con;
+  private boolean listened;
+  private Thread thread;
+  private volatile boolean running;
+
+  // Statistics: notifications heard, keys evicted, and reconnects
+  private volatile long heard, keys, reconnects;
+
+  Listener(String u, Properties p, Pool pl, AccountCache c, Recent r, Customers cs) {
+    url = u;
+    props = p;
+    pool = pl;
+    cache = c;
+    recent = r;
+    custs = cs;
+  }
+
+  /** start() starts listening on a thread of its own */
+
+  void start() {
+    running = true;
+    thread = new Thread(this::run, "cache-listener");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /** close() stops listening and closes the listening connection */
+
+  void close() {
+    running = false;
+    thread.interrupt();
+    try { thread.join(); }
+    catch(InterruptedException e) { Thread.currentThread().interrupt(); }
+  }
+
+  /** getStats() returns the number of notifications heard and keys evicted */
+
+  public String getStats() {
+    return String.format(
+      "%s, %d notifications, %d keys evicted, %d reconnects",
+      con == null ? "not listening" : "listening", heard, keys, reconnects
+    );
+  }
+
+  /** run() is the body of the listener: it waits for notifications, evicts
+    * what they name, and connects again if the connection is lost. */
+
+  private void run() {
+    while(running) {
+      try {
+        if (con == null) { listen(); }
+
+        PGNotification[] ns = con.unwrap(PGConnection.class).getNotifications(WAIT);
+        if (ns != null)
+          for(PGNotification n : ns) {
+            heard++;
+            evict(n.getParameter(), pool.isOwn(n.getPID()));
+          }
+      }
+      catch(SQLException e) {
+        drop();
+        try { Thread.sleep(RETRY); }
+        catch(InterruptedException x) { return; }
+      }
+    }
+    drop();
+  }
+
+  /** listen() connects and starts listening on CHANNEL. The caches are cleared
+    * when connecting again, since changes may have been missed. */
+
+  private void listen() throws SQLException {
+    con = DriverManager.getConnection(url, props);
+    try (Statement s = con.createStatement()) { s.execute("LISTEN "+CHANNEL); }
+
+    if (listened) { reconnects++; cache.clear(); recent.clear(); custs.evictAll(); }
+    listened = true;
+  }
+
+  /** drop() closes the listening connection, if any */
+
+  private void drop() {
+    if (con == null) { return; }
+    try { con.close(); } catch(SQLException e) {}
+    con = null;
+  }
+
+  /** evict(msg, own) evicts the keys named by a notification, '<table>:<keys>',
+    * where the keys are comma-delimited AIDs (CIDs for Customer, AID:CID pairs
+    * for Account_Owner), or '*' for too many to name. Unless the App sent it
+    * (own), the recent postings of accounts changed are dropped too, and
+    * customers changed are marked stale in the name index. */
+
+  private void evict(String msg, boolean own) {
+    int at = msg.indexOf(':');
+    if (at < 0) { return; }
+    String table = msg.substring(0, at), list = msg.substring(at+1);
+
+    if (list.equals("*")) {
+      cache.clear();
+      if (!own) { recent.clear(); }
+      if (!own && table.equals("Customer")) { custs.evictAll(); }
+      return;
+    }
+
+    for(String k : list.split(",")) {
+      try {
+        switch(table) {
+          case "Account":
+          case "Account_Shard":
+            cache.evictAccount(Long.parseLong(k));
+            if (!own) { recent.evict(Long.parseLong(k)); }
+            break;
+          case "Card": cache.evictCards(Long.parseLong(k)); break;
+          case "Customer":
+            cache.evictCustomer(Integer.parseInt(k));
+            if (!own) { custs.evict(Integer.parseInt(k)); }
+            break;
+          case "Account_Owner":
+            String[] p = k.split(":");
+            cache.evictOwner(Long.parseLong(p[0]), Integer.parseInt(p[1]));
+            break;
+          default: continue;
+        }
+        keys++;
+      }
+      catch(RuntimeException e) {}
+    }
+  }
+}
@@ -0,0 +1,305 @@
+/**
+  * Pool is a bounded pool of connections to one database. Connections are
+  * opened as they are needed (up to 'size' of them), handed out by borrow(),
+  * and kept for reuse once they are released. A connection is checked before
+  * it is handed out, so one the server dropped is replaced rather than given
+  * to a command. Connections that sit idle too long, or that have been open
+  * longer than their maximum lifetime, are closed by a background sweep.
+  *
+  * The pool keeps the server process IDs of its connections (see isOwn()), so
+  * notifications sent by the App's own work can be told from other Apps'.
+  *
+  * The pool also times every checkout, so a command stuck waiting for a
+  * connection shows up in its statistics (see getStats()).
+  *
+  * Date: 18 October 2026
+  */
+
+package dbase;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.postgresql.PGConnection;
+
+public class Pool {
+  // Pooled is a connection held by the pool, with its cache of prepared
+  // statements, the server process serving it (0 if unknown), and the times
+  // it was opened and last released (nanoseconds)
+  static class Pooled {
+    final Connection con;
+    final Statements stmts;
+    final int pid;
+    final long opened;
+    long released;
+
+    Pooled(Connection c, int cache) {
+      con = c;
+      stmts = new Statements(c, cache);
+      int id;
+      try { id = c.unwrap(PGConnection.class).getBackendPID(); }
+      catch(SQLException e) { id = 0; }
+      pid = id;
+      opened = released = System.nanoTime();
+    }
+  }
+
+  // url and props are what connections are opened with
+  // size is the most connections open at once
+  // idle holds the open connections nobody is borrowing, most recent last
+  // open is the number of connections open (idle or borrowed)
+  private String url;
+  private Properties props;
+  private int size;
+  private ArrayDeque<Pooled> idle;
+  private int open;
+  private boolean closed;
+
+  // pids holds the server process IDs of the open connections
+  private final Set<Integer> pids = ConcurrentHashMap.newKeySet();
+
+  // validTimeout is how long (seconds) a connection has to answer a check
+  // idleTimeout is how long (ms) a connection may sit idle before it's closed
+  // maxLifetime is how long (ms) a connection may stay open at all
+  // borrowTimeout is how long (ms) borrow() waits for a connection to free up
+  // stmtCache is the number of prepared statements cached per connection
+  private int validTimeout, stmtCache;
+  private long idleTimeout, maxLifetime, borrowTimeout;
+
+  // lock guards the pool, and freed is signalled when a connection is released
+  // sweeper closes idle and expired connections every so often
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition freed = lock.newCondition();
+  private ScheduledExecutorService sweeper;
+
+  // Checkout statistics: the number of borrows, the total and longest time
+  // spent waiting in borrow(), and the number of connections opened, closed
+  // for being idle or expired, and found dead on borrow
+  private long borrows, waitNanos, maxWaitNanos;
+  private long created, evicted, invalid;
+
+  /** Pool(url, props, size) creates an empty pool of at most 'size' connections
+    * to the database at the URL given. No connection is opened until the first
+    * borrow.
+    *
+    * @param u The JDBC URL to connect to
+    * @param p The properties (credentials, etc) to connect with
+    * @param n The most connections the pool keeps open at once */
+
+  public Pool(String u, Properties p, int n) {
+    url = u;
+    props = p;
+    size = Math.max(n, 1);
+    idle = new ArrayDeque<>();
+    open = 0;
+    closed = false;
+
+    validTimeout = 2;
+    idleTimeout = TimeUnit.MINUTES.toMillis(10);
+    maxLifetime = TimeUnit.MINUTES.toMillis(30);
+    borrowTimeout = TimeUnit.SECONDS.toMillis(30);
+    stmtCache = 64;
+
+    sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread t = new Thread(r, "pool-sweeper");
+      t.setDaemon(true);
+      return t;
+    });
+    sweeper.scheduleWithFixedDelay(this::sweep, 30, 30, TimeUnit.SECONDS);
+  }
+
+  public void setIdleTimeout(long ms) { idleTimeout = ms; }
+  public void setMaxLifetime(long ms) { maxLifetime = ms; }
+  public void setBorrowTimeout(long ms) { borrowTimeout = ms; }
+  public void setValidTimeout(int s) { validTimeout = s; }
+  public void setStmtCache(int n) { stmtCache = n; }
+
+  public int getSize() { return size; }
+
+  /** borrow() hands out a connection, reusing an idle one if there is one, or
+    * opening a new one if fewer than 'size' are open. Otherwise it waits for a
+    * connection to be released, up to the borrow timeout. Idle connections
+    * that have expired or that fail validation are closed and skipped.
+    *
+    * @return A connection (with autocommit on) for the caller's sole use
+    * @throws SQLException If no connection could be had in time */
+
+  Pooled borrow() throws SQLException {
+    long start = System.nanoTime(), deadline = start + borrowTimeout * 1000000L;
+
+    while(true) {
+      Pooled p = null;
+
+      lock.lock();
+      try {
+        while(true) {
+          if (closed) { throw new SQLException("The connection pool is closed"); }
+          if ((p = idle.pollLast()) != null || open < size) { break; }
+
+          long left = deadline - System.nanoTime();
+          if (left <= 0)
+            throw new SQLException("Timed out waiting for a connection ("+size+" in use)");
+          try { freed.awaitNanos(left); }
+          catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for a connection");
+          }
+        }
+        if (p == null) { open++; }
+      }
+      finally { lock.unlock(); }
+
+      // Open a new connection, or check the idle one taken is still usable
+      if (p == null) {
+        try { p = new Pooled(DriverManager.getConnection(url, props), stmtCache); }
+        catch(SQLException e) { discard(null); throw e; }
+        pids.add(p.pid);
+        lock.lock();
+        try { created++; } finally { lock.unlock(); }
+      }
+      else if (expired(p, System.nanoTime()) || !valid(p)) {
+        lock.lock();
+        try { invalid++; } finally { lock.unlock(); }
+        discard(p);
+        continue;
+      }
+
+      long waited = System.nanoTime() - start;
+      lock.lock();
+      try {
+        borrows++;
+        waitNanos += waited;
+        maxWaitNanos = Math.max(maxWaitNanos, waited);
+      }
+      finally { lock.unlock(); }
+      return p;
+    }
+  }
+
+  /** release(p, broken) returns a borrowed connection to the pool. A broken
+    * connection (or one left closed) is closed and dropped, and one left in a
+    * transaction is rolled back first.
+    *
+    * @param p The connection being returned
+    * @param broken True if the connection shouldn't be reused */
+
+  void release(Pooled p, boolean broken) {
+    try {
+      if (!broken && !p.con.isClosed() && !p.con.getAutoCommit()) {
+        p.con.rollback();
+        p.con.setAutoCommit(true);
+      }
+      broken = broken || p.con.isClosed();
+    }
+    catch(SQLException e) { broken = true; }
+
+    if (broken || closed) { discard(p); return; }
+
+    lock.lock();
+    try {
+      p.released = System.nanoTime();
+      idle.addLast(p);
+      freed.signal();
+    }
+    finally { lock.unlock(); }
+  }
+
+  /** close() closes every idle connection and stops the pool from handing out
+    * any more. Connections still borrowed are closed as they're released. */
+
+  public void close() {
+    sweeper.shutdownNow();
+
+    lock.lock();
+    try {
+      closed = true;
+      for(Pooled p : idle) { quietClose(p); open--; }
+      idle.clear();
+      freed.signalAll();
+    }
+    finally { lock.unlock(); }
+  }
+
+  /** isOwn(pid) returns true if the server process serves one of the pool's
+    * connections */
+
+  public boolean isOwn(int pid) { return pid != 0 && pids.contains(pid); }
+
+  /** getStats() returns a one-line summary of the pool's checkout statistics */
+
+  public String getStats() {
+    lock.lock();
+    try {
+      return String.format(
+        "%d/%d open, %d idle | %d borrows, wait avg %.3f ms, max %.3f ms | "+
+        "%d opened, %d evicted, %d invalid | %s",
+        open, size, idle.size(), borrows,
+        borrows == 0 ? 0.0 : waitNanos / 1e6 / borrows, maxWaitNanos / 1e6,
+        created, evicted, invalid, Statements.getStats()
+      );
+    }
+    finally { lock.unlock(); }
+  }
+
+  /** sweep() closes idle connections that have sat unused past the idle
+    * timeout or outlived their maximum lifetime. */
+
+  private void sweep() {
+    ArrayDeque<Pooled> out = new ArrayDeque<>();
+    long now = System.nanoTime();
+
+    lock.lock();
+    try {
+      Iterator<Pooled> it = idle.iterator();
+      while(it.hasNext()) {
+        Pooled p = it.next();
+        if (expired(p, now) || now - p.released > idleTimeout * 1000000L) {
+          it.remove();
+          out.add(p);
+          open--;
+          evicted++;
+        }
+      }
+      if (!out.isEmpty()) { freed.signalAll(); }
+    }
+    finally { lock.unlock(); }
+
+    for(Pooled p : out) { quietClose(p); }
+  }
+
+  private boolean expired(Pooled p, long now) {
+    return now - p.opened > maxLifetime * 1000000L;
+  }
+
+  private boolean valid(Pooled p) {
+    try { return p.con.isValid(validTimeout); }
+    catch(SQLException e) { return false; }
+  }
+
+  /** discard(p) closes a connection (if there is one) and frees its place in
+    * the pool for a new one. */
+
+  private void discard(Pooled p) {
+    if (p != null) { quietClose(p); }
+
+    lock.lock();
+    try { open--; freed.signal(); }
+    finally { lock.unlock(); }
+  }
+
+  private void quietClose(Pooled p) {
+    pids.remove(p.pid);
+    try { p.con.close(); } catch(SQLException e) {}
+  }
+}
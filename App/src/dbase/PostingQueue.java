@@ -0,0 +1,198 @@
+/**
+  * PostingQueue takes credits and debits, and posts them through the Ledger
+  * in groups: a committer thread gathers up to GROUP postings (or as many as
+  * arrive within WAIT ms of the first) and posts them all in one transaction,
+  * so the server flushes its log once per group rather than once per posting.
+  * Every posting runs under its own savepoint, so one that's declined doesn't
+  * undo the rest of its group. A group is posted in AID order (the order
+  * Ledger.transfer locks accounts in), so groups and transfers racing on the
+  * same accounts take their locks in the same order and can't deadlock.
+  *
+  * submit() returns a future per posting, which completes (with the new
+  * balance, or with the reason the posting failed) once its group commits.
+  * The queue holds at most CAPACITY postings; submit() blocks while it's full,
+  * so a bulk load can't outrun the database.
+  *
+  * The committer needs a connection of its own. With a pool of one connection
+  * there's none to spare, so postings are made straight away on the caller's
+  * connection instead (a group of one).
+  *
+  * Date: 18 October 2026
+  */
+
+package dbase;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+public class PostingQueue {
+  // CAPACITY is the most postings waiting at once
+  // GROUP is the most postings committed together
+  // WAIT is how long (ms) a group waits for more postings after its first
+  public static final int CAPACITY = 1024, GROUP = 64;
+  public static final long WAIT = 5;
+
+  // Req is a posting waiting in the queue, and the future of its result
+  private static class Req {
+    final long aid;
+    final double amt;
+    final boolean deb;
+    final String route, rec, desc;
+    final CompletableFuture<Double> done = new CompletableFuture<>();
+
+    Req(long a, double m, boolean d, String rt, String rc, String ds) {
+      aid = a; amt = m; deb = d; route = rt; rec = rc; desc = ds;
+    }
+  }
+
+  // STOP tells the committer to finish the postings queued and stop
+  private static final Req STOP = new Req(0, 0, false, null, null, null);
+
+  // con is the handler postings are made through
+  // queue holds the postings waiting to be committed
+  // committer is the thread committing groups, or null if posting directly
+  private Conn con;
+  private ArrayBlockingQueue<Req> queue;
+  private Thread committer;
+
+  // Statistics: the groups committed, and the postings in them
+  private volatile long groups, posted;
+
+  PostingQueue(Conn c, boolean async) {
+    con = c;
+    queue = new ArrayBlockingQueue<>(CAPACITY);
+
+    if (async) {
+      committer = new Thread(this::run, "posting-committer");
+      committer.setDaemon(true);
+      committer.start();
+    }
+  }
+
+  /** submit(aid, amt, deb, route, rec, desc) queues a credit or debit (see
+    * Ledger.post), waiting for room in the queue if it's full.
+    *
+    * @return The future of the posting: the account's new balance once the
+    *   posting commits, or the exception that stopped it */
+
+  public CompletableFuture<Double> submit(long aid, double amt, boolean deb, String route,
+    String rec, String desc) throws SQLException {
+    Req r = new Req(aid, amt, deb, route, rec, desc);
+
+    if (committer == null) {
+      commit(Collections.singletonList(r));
+      return r.done;
+    }
+
+    try { queue.put(r); }
+    catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SQLException("Interrupted waiting to queue a posting");
+    }
+    return r.done;
+  }
+
+  /** close() commits the postings still queued, and stops the committer */
+
+  void close() {
+    if (committer == null) { return; }
+
+    try {
+      queue.put(STOP);
+      committer.join();
+    }
+    catch(InterruptedException e) { Thread.currentThread().interrupt(); }
+  }
+
+  /** getStats() returns the number of groups and postings committed */
+
+  public String getStats() {
+    long g = groups, p = posted;
+    return String.format(
+      "%d postings in %d groups (avg %.1f per commit)", p, g, g == 0 ? 0.0 : (double)p / g
+    );
+  }
+
+  /** run() is the body of the committer: it takes the first posting waiting,
+    * gathers more for up to WAIT ms (or until the group is full), and commits
+    * them together. */
+
+  private void run() {
+    ArrayList<Req> group = new ArrayList<>(GROUP);
+    boolean stop = false;
+
+    try {
+      while(!stop) {
+        Req first = queue.take();
+        if (first == STOP) { break; }
+        group.add(first);
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(WAIT);
+        while(group.size() < GROUP) {
+          long left = deadline - System.nanoTime();
+          Req r = left > 0 ? queue.poll(left, TimeUnit.NANOSECONDS) : queue.poll();
+          if (r == null) { break; }
+          if (r == STOP) { stop = true; break; }
+          group.add(r);
+        }
+
+        commit(group);
+        group.clear();
+      }
+    }
+    catch(InterruptedException e) { Thread.currentThread().interrupt(); }
+
+    // Fail anything left behind
+    for(Req r : group) { r.done.completeExceptionally(new SQLException("Posting queue stopped")); }
+    for(Req r; (r = queue.poll()) != null; )
+      if (r != STOP) { r.done.completeExceptionally(new SQLException("Posting queue stopped")); }
+  }
+
+  /** commit(group) posts a group of postings in one transaction, and then
+    * completes their futures. The postings are made in AID order, and in the
+    * order submitted for each account. A posting that fails is rolled back to
+    * its savepoint and fails alone; if the whole transaction fails (or is
+    * retried by Conn.transact and still fails), every posting in it does. */
+
+  private void commit(List<Req> group) {
+    Object[] res = new Object[group.size()];
+
+    // order holds the postings' indexes by AID; the sort is stable, so each
+    // account's postings keep the order they were submitted in
+    Integer[] order = new Integer[res.length];
+    for(int i=0; i<order.length; i++) { order[i] = i; }
+    Arrays.sort(order, Comparator.comparingLong(i -> group.get(i).aid));
+
+    try {
+      con.transact(w -> {
+        for(int i : order) {
+          Req r = group.get(i);
+          try { res[i] = Ledger.post(con, r.aid, r.amt, r.deb, r.route, r.rec, r.desc); }
+          catch(SQLException e) {
+            if (Work.isRetryable(e)) { throw e; }
+            res[i] = e;
+          }
+        }
+        return null;
+      });
+    }
+    catch(SQLException e) {
+      for(Req r : group) { r.done.completeExceptionally(e); }
+      return;
+    }
+
+    groups++;
+    posted += res.length;
+    for(int i=0; i<res.length; i++) {
+      if (res[i] instanceof Double) { group.get(i).done.complete((Double)res[i]); }
+      else { group.get(i).done.completeExceptionally((SQLException)res[i]); }
+    }
+  }
+}
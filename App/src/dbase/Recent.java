@@ -0,0 +1,205 @@
+/**
+  * Recent keeps the last DEPTH postings to each account tellers have looked
+  * at, so "the last few transactions" are shown without asking the server.
+  * Each account's postings are held in a ring of primitive columns (TID, day,
+  * amount, debit or credit); the newest overwrites the oldest once it's full.
+  *
+  * An account's ring is filled from the database the first time it's asked
+  * for, and from then on the App's own postings are added to it as they
+  * commit (see Ledger). Postings other Apps make are heard of by the Listener,
+  * which drops the ring so it's filled again when next asked for. At most
+  * ACCOUNTS rings are held, dropping the least recently used.
+  *
+  * Date: 18 October 2026
+  */
+
+package dbase;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class Recent {
+  // DEPTH is the number of postings held per account
+  // ACCOUNTS is the most accounts held
+  public static final int DEPTH = 10, ACCOUNTS = 4096;
+
+  // Posting is a posting to an account, as shown to tellers
+  public static class Posting {
+    public final long tid;
+    public final LocalDate date;
+    public final double amount;
+    public final boolean debit;
+
+    Posting(long t, LocalDate d, double a, boolean db) {
+      tid = t;
+      date = d;
+      amount = a;
+      debit = db;
+    }
+
+    public String toString() {
+      return String.format("%s  %-11d  %-6s  %10.2f", date, tid, debit ? "DEBIT" : "CREDIT", amount);
+    }
+  }
+
+  // Ring is the last DEPTH postings to an account, as columns; slot 'head' is
+  // written next, and 'count' slots are filled. It's 'loaded' once it has
+  // been filled from the database.
+  private static class Ring {
+    final long[] tid = new long[DEPTH];
+    final int[] day = new int[DEPTH];
+    final double[] amt = new double[DEPTH];
+    final boolean[] deb = new boolean[DEPTH];
+    int head, count;
+    boolean loaded;
+
+    /** add(t, d, a, db) writes a posting over the oldest, unless it's held */
+
+    void add(long t, int d, double a, boolean db) {
+      for(int i=0; i<count; i++)
+        if (tid[i] == t) { return; }
+
+      tid[head] = t;
+      day[head] = d;
+      amt[head] = a;
+      deb[head] = db;
+      head = (head + 1) % DEPTH;
+      if (count < DEPTH) { count++; }
+    }
+
+    /** newest(i) returns the slot of the i-th newest posting (0 is newest);
+      * postings are added oldest first, so the newest is the last added. */
+
+    int newest(int i) { return (head - 1 - i + 2 * DEPTH) % DEPTH; }
+  }
+
+  private static final String LAST =
+    "SELECT \"TID\", \"Date\", \"Type\", \"Amount\" FROM \"Transaction\" WHERE \"AID\" = ? "+
+    "ORDER BY \"Date\" DESC, \"TID\" DESC LIMIT ?";
+
+  // con is the handler rings are filled through
+  // rings holds the rings by AID, least recently used first
+  private Conn con;
+  private final LinkedHashMap<Long,Ring> rings;
+
+  // Statistics: lookups answered from memory, rings filled from the database,
+  // and rings dropped (for space, or because another App posted)
+  private long hits, fills, dropped;
+
+  Recent(Conn c) {
+    con = c;
+    rings = new LinkedHashMap<Long,Ring>(16, 0.75f, true) {
+      protected boolean removeEldestEntry(Map.Entry<Long,Ring> e) {
+        if (size() <= ACCOUNTS) { return false; }
+        dropped++;
+        return true;
+      }
+    };
+  }
+
+  /** last(aid, n) returns the account's last n postings (at most DEPTH),
+    * newest first. The account's ring is filled from the database if it
+    * isn't held yet; otherwise no query is made.
+    *
+    * @param aid The account
+    * @param n The number of postings wanted
+    * @return The postings, newest first */
+
+  public List<Posting> last(long aid, int n) throws SQLException {
+    Ring r;
+    synchronized(this) {
+      r = rings.get(aid);
+      if (r == null) { r = new Ring(); rings.put(aid, r); }
+      if (r.loaded) { hits++; return read(r, n); }
+    }
+
+    // Postings committed while the ring is filled are added to it by their
+    // TID, so filling only adds the ones it doesn't hold yet
+    ArrayList<long[]> got = new ArrayList<>();
+    ResultSet rs = con.query(LAST, aid, DEPTH);
+    while(rs.next())
+      got.add(new long[] {
+        rs.getLong("TID"), rs.getDate("Date").toLocalDate().toEpochDay(),
+        Double.doubleToLongBits(rs.getDouble("Amount")), rs.getString("Type").equals("DEBIT") ? 1 : 0
+      });
+    rs.close();
+
+    synchronized(this) {
+      fill(r, got);
+      fills++;
+      return read(r, n);
+    }
+  }
+
+  /** posted(aid, tid, date, amt, deb) adds a committed posting to the
+    * account's ring, if it's held. */
+
+  public synchronized void posted(long aid, long tid, LocalDate date, double amt, boolean deb) {
+    Ring r = rings.get(aid);
+    if (r != null) { r.add(tid, (int)date.toEpochDay(), amt, deb); }
+  }
+
+  /** evict(aid) drops the account's ring (another App posted to it) */
+
+  public synchronized void evict(long aid) {
+    if (rings.remove(aid) != null) { dropped++; }
+  }
+
+  /** clear() drops every ring */
+
+  public synchronized void clear() {
+    dropped += rings.size();
+    rings.clear();
+  }
+
+  /** getStats() returns the number of rings held and how lookups were met */
+
+  public synchronized String getStats() {
+    return String.format("%d/%d accounts, %d hits, %d fills, %d dropped",
+      rings.size(), ACCOUNTS, hits, fills, dropped);
+  }
+
+  /****************************************************************************/
+
+  /** fill(r, got) rebuilds the ring from the postings read from the database
+    * (newest first) and those it already held, keeping the newest DEPTH by
+    * date and TID. */
+
+  private static void fill(Ring r, List<long[]> got) {
+    ArrayList<long[]> all = new ArrayList<>(got);
+    for(int i=0; i<r.count; i++) {
+      int s = r.newest(i);
+      all.add(new long[] {r.tid[s], r.day[s], Double.doubleToLongBits(r.amt[s]), r.deb[s] ? 1 : 0});
+    }
+    all.sort((a, b) -> a[1] != b[1] ? Long.compare(b[1], a[1]) : Long.compare(b[0], a[0]));
+
+    // Keep the newest DEPTH (a posting both read and held is next to itself)
+    ArrayList<long[]> keep = new ArrayList<>();
+    for(long[] p : all)
+      if (keep.size() < DEPTH && (keep.isEmpty() || keep.get(keep.size()-1)[0] != p[0]))
+        keep.add(p);
+
+    r.head = r.count = 0;
+    for(int i=keep.size()-1; i>=0; i--) {
+      long[] p = keep.get(i);
+      r.add(p[0], (int)p[1], Double.longBitsToDouble(p[2]), p[3] == 1);
+    }
+    r.loaded = true;
+  }
+
+  /** read(r, n) returns the ring's newest n postings, newest first */
+
+  private static List<Posting> read(Ring r, int n) {
+    ArrayList<Posting> res = new ArrayList<>();
+    for(int i=0; i<Math.min(n, r.count); i++) {
+      int s = r.newest(i);
+      res.add(new Posting(r.tid[s], LocalDate.ofEpochDay(r.day[s]), r.amt[s], r.deb[s]));
+    }
+    return res;
+  }
+}
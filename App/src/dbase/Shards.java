@@ -0,0 +1,211 @@
+/**
+  * Shards keeps the balances of hot accounts - accounts so many postings go
+  * to (like a branch's fee account) that their Account row would become a
+  * lock everyone queues on. A hot account has N rows in Account_Shard, and
+  * credits to it (see Ledger) are striped across them, so N credits can be
+  * made at once rather than one after the other.
+  *
+  * An account's balance is its Account balance plus the sum of its shards
+  * (see BALANCE). Folding an account moves the sum of its shards into its
+  * Account balance and zeroes them; debits fold the account first, so funds
+  * are checked against the whole balance. If the pool has a spare connection,
+  * a compactor thread also folds every hot account every FOLD seconds.
+  *
+  * Locks are taken Account row first and shards second. Shard credits only
+  * take a key-share lock on the Account row (for the Transaction's foreign
+  * key), which doesn't conflict with the row lock folding takes.
+  *
+  * Date: 18 October 2026
+  */
+
+package dbase;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class Shards {
+  // BALANCE is the whole balance of the account aliased A, shards included
+  public static final String BALANCE =
+    "(A.\"Balance\" + COALESCE((SELECT SUM(S.\"Balance\") FROM \"Account_Shard\" S "+
+    "WHERE S.\"AID\" = A.\"AID\"), 0))";
+
+  // MAX is the most shards an account may have
+  // FOLD is how often (seconds) the compactor folds the hot accounts
+  public static final int MAX = 64;
+  public static final long FOLD = 60;
+
+  // con is the handler shards are kept through
+  // hot maps each hot account to its number of shards
+  // stripe picks the shard of the next credit, round robin
+  // compactor is the thread folding hot accounts, or null
+  private Conn con;
+  private final ConcurrentHashMap<Long,Integer> hot = new ConcurrentHashMap<>();
+  private final AtomicInteger stripe = new AtomicInteger();
+  private Thread compactor;
+
+  // Statistics: the folds made, and the folds that moved a balance
+  private volatile long folds, moved;
+
+  Shards(Conn c, boolean periodic) {
+    con = c;
+
+    if (periodic) {
+      compactor = new Thread(this::run, "shard-compactor");
+      compactor.setDaemon(true);
+      compactor.start();
+    }
+  }
+
+  /** load() reads which accounts are hot from Account_Shard. A database
+    * without the table (made before it existed) has no hot accounts. */
+
+  void load() throws SQLException {
+    hot.clear();
+
+    try {
+      ResultSet r = con.query(
+        "SELECT \"AID\", COUNT(*) FROM \"Account_Shard\" GROUP BY \"AID\""
+      );
+      while(r.next()) { hot.put(r.getLong(1), r.getInt(2)); }
+      r.close();
+    }
+    catch(SQLException e) {
+      if (!"42P01".equals(e.getSQLState())) { throw e; }
+    }
+  }
+
+  /** isHot(aid) returns true if the account's balance is sharded */
+
+  public boolean isHot(long aid) { return hot.containsKey(aid); }
+
+  /** getHot() returns the hot accounts and their numbers of shards, by AID */
+
+  public TreeMap<Long,Integer> getHot() { return new TreeMap<>(hot); }
+
+  /** stripe(aid) returns the shard the next credit to a hot account goes to */
+
+  int stripe(long aid) {
+    Integer n = hot.get(aid);
+    return n == null ? 0 : (stripe.getAndIncrement() & Integer.MAX_VALUE) % n;
+  }
+
+  /** forget(aid) stops treating an account as hot, for when its shards were
+    * removed behind this App's back (by a reset, or another App). */
+
+  void forget(long aid) { hot.remove(aid); }
+
+  /** designate(aid, n) makes an open account hot with n shards, or changes
+    * how many shards a hot account has (folding it first).
+    *
+    * @param aid The account to make hot
+    * @param n The number of shards, from 2 to MAX */
+
+  public void designate(long aid, int n) throws SQLException {
+    if (n < 2 || n > MAX) { throw new SQLException("An account must have 2 to "+MAX+" shards"); }
+
+    con.transact(w -> {
+      fold(aid);
+
+      ResultSet r = w.query(
+        "SELECT \"AID\" FROM \"Account\" WHERE \"AID\" = ? AND \"Date_Close\" IS NULL", aid
+      );
+      boolean open = r.next();
+      r.close();
+      if (!open) { throw new SQLException("Account "+aid+" doesn't exist or is closed"); }
+
+      w.update("DELETE FROM \"Account_Shard\" WHERE \"AID\" = ? AND \"Shard\" >= ?", aid, n);
+      return w.update(
+        "INSERT INTO \"Account_Shard\" SELECT ?, s, 0 FROM generate_series(0, ? - 1) s "+
+        "ON CONFLICT DO NOTHING", aid, n
+      );
+    });
+    hot.put(aid, n);
+  }
+
+  /** retire(aid) folds a hot account and removes its shards, making it an
+    * ordinary account again. It does nothing to an account that isn't hot. */
+
+  public void retire(long aid) throws SQLException {
+    if (!isHot(aid)) { return; }
+
+    con.transact(w -> {
+      fold(aid);
+      return w.update("DELETE FROM \"Account_Shard\" WHERE \"AID\" = ?", aid);
+    });
+    hot.remove(aid);
+  }
+
+  /** fold(aid) moves the sum of a hot account's shards into its Account
+    * balance, and zeroes the shards. The Account row is locked first, then
+    * the shards (waiting for credits being made to them).
+    *
+    * @return The amount moved into the Account balance */
+
+  public double fold(long aid) throws SQLException {
+    double sum = con.transact(w -> {
+      ResultSet r = w.query(
+        "SELECT \"AID\" FROM \"Account\" WHERE \"AID\" = ? FOR NO KEY UPDATE", aid
+      );
+      r.close();
+
+      r = w.query(
+        "SELECT \"Balance\" FROM \"Account_Shard\" WHERE \"AID\" = ? ORDER BY \"Shard\" FOR UPDATE", aid
+      );
+      double s = 0;
+      while(r.next()) { s += r.getDouble(1); }
+      r.close();
+
+      if (s != 0) {
+        w.update("UPDATE \"Account_Shard\" SET \"Balance\" = 0 WHERE \"AID\" = ?", aid);
+        w.update("UPDATE \"Account\" SET \"Balance\" = \"Balance\" + ? WHERE \"AID\" = ?", s, aid);
+      }
+      return s;
+    });
+
+    folds++;
+    if (sum != 0) { moved++; }
+    return sum;
+  }
+
+  /** foldAll() folds every hot account, each in a transaction of its own.
+    *
+    * @return The number of accounts folded */
+
+  public int foldAll() throws SQLException {
+    int n = 0;
+    for(long aid : hot.keySet()) { fold(aid); n++; }
+    return n;
+  }
+
+  /** close() stops the compactor */
+
+  void close() {
+    if (compactor == null) { return; }
+
+    compactor.interrupt();
+    try { compactor.join(); }
+    catch(InterruptedException e) { Thread.currentThread().interrupt(); }
+  }
+
+  /** getStats() returns the number of hot accounts and folds made */
+
+  public String getStats() {
+    return String.format("%d hot accounts | %d folds, %d moved a balance", hot.size(), folds, moved);
+  }
+
+  /** run() is the body of the compactor: it folds every hot account every
+    * FOLD seconds. */
+
+  private void run() {
+    while(true) {
+      try { Thread.sleep(FOLD * 1000); }
+      catch(InterruptedException e) { return; }
+
+      try { foldAll(); }
+      catch(SQLException e) {}
+    }
+  }
+}
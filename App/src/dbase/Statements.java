@@ -0,0 +1,67 @@
+/**
+  * Statements is the cache of prepared statements kept with each pooled
+  * connection, keyed by SQL template. It holds the 'size' most recently used
+  * statements, closing the least recently used one when a new one pushes the
+  * cache past its size. Since a statement is reused for every run of its
+  * template, the driver prepares it on the server once it has run a few times
+  * (see Conn's prepareThreshold) and the server reuses its plan from then on.
+  *
+  * Date: 18 October 2026
+  */
+
+package dbase;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class Statements {
+  // hits and misses count lookups across every connection's cache
+  private static final AtomicLong hits = new AtomicLong(), misses = new AtomicLong();
+
+  // con is the connection statements are prepared on
+  // cache maps templates to their statements, least recently used first
+  private Connection con;
+  private LinkedHashMap<String,PreparedStatement> cache;
+
+  Statements(Connection c, int size) {
+    con = c;
+    cache = new LinkedHashMap<String,PreparedStatement>(16, 0.75f, true) {
+      protected boolean removeEldestEntry(Map.Entry<String,PreparedStatement> e) {
+        if (size() <= size) { return false; }
+        try { e.getValue().close(); } catch(SQLException ex) {}
+        return true;
+      }
+    };
+  }
+
+  /** get(sql) returns the cached statement for the template, preparing (and
+    * caching) it if there isn't one. Its parameters are cleared.
+    *
+    * @param sql The SQL template, with '?' for every parameter
+    * @return The prepared statement for the template */
+
+  PreparedStatement get(String sql) throws SQLException {
+    PreparedStatement ps = cache.get(sql);
+
+    if (ps == null || ps.isClosed()) {
+      misses.incrementAndGet();
+      ps = con.prepareStatement(sql);
+      cache.put(sql, ps);
+    }
+    else {
+      hits.incrementAndGet();
+      ps.clearParameters();
+    }
+    return ps;
+  }
+
+  /** getStats() returns the hits and misses of every cache, as a string */
+
+  static String getStats() {
+    return hits.get()+" statement cache hits, "+misses.get()+" misses";
+  }
+}
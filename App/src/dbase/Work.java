@@ -0,0 +1,210 @@
+/**
+  * Work is a unit of work: a transaction on the current thread's lease, with
+  * savepoints and batched statements. Work is begun with Conn.begin() and is
+  * meant to be used in a try-with-resources block; anything not committed by
+  * the time it closes is rolled back.
+  *
+  * Beginning work inside other work (on the same thread) doesn't start a new
+  * transaction. The inner work runs under a savepoint of the outer one: its
+  * commit() releases the savepoint, and closing it uncommitted rolls back to
+  * the savepoint. Only the outermost work commits.
+  *
+  * afterCommit() holds things to do once the outermost work commits (like
+  * evicting what it changed from the caches), and drops them if it doesn't
+  * (or if the nested work that held them rolls back to its savepoint).
+  *
+  * Conn.transact() runs a body of work, retrying it when the server aborts it
+  * for a serialization failure or deadlock, so bodies must not prompt the user
+  * (get input first, then transact).
+  *
+  * Date: 18 October 2026
+  */
+
+package dbase;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+
+public class Work implements AutoCloseable {
+  // Body is a body of work run (and possibly rerun) by Conn.transact()
+  public interface Body<T> { T run(Work w) throws SQLException; }
+
+  // lease is the lease the work runs on, and tx its connection
+  // outer is the savepoint the work runs under, or null if it's outermost
+  // batched holds the statements with batched rows, in the order batched
+  // held is the number of things the lease held to run after the commit
+  //   when the work began, so nested work rolled back can drop its own
+  // done is set once the work has committed or rolled back
+  private Lease lease;
+  private Connection tx;
+  private Savepoint outer;
+  private int held;
+  private LinkedHashSet<PreparedStatement> batched;
+  private boolean done;
+
+  Work(Lease l) throws SQLException {
+    lease = l;
+    tx = l.connection();
+    batched = new LinkedHashSet<>();
+    held = l.held();
+    done = false;
+
+    try {
+      if (tx.getAutoCommit()) { tx.setAutoCommit(false); outer = null; }
+      else { outer = tx.setSavepoint(); }
+    }
+    catch(SQLException e) { lease.check(e); lease.close(); throw e; }
+  }
+
+  /** isNested() returns true if this work runs inside other work */
+
+  public boolean isNested() { return outer != null; }
+
+  public ResultSet query(String sql, Object... args) throws SQLException {
+    return lease.query(sql, args);
+  }
+
+  public int update(String sql, Object... args) throws SQLException {
+    return lease.update(sql, args);
+  }
+
+  /** stream(sql, fetch, args) runs the SQL template as a query whose results
+    * are read through a server-side cursor, 'fetch' rows at a time, rather
+    * than all at once - so reading any number of rows takes the memory of
+    * one fetch. The results can only be read until the work ends.
+    *
+    * @param sql The SQL template, with '?' for every parameter
+    * @param fetch The number of rows fetched at a time
+    * @param args The values of the parameters
+    * @return The results of the query */
+
+  public ResultSet stream(String sql, int fetch, Object... args) throws SQLException {
+    PreparedStatement ps = lease.prepare(sql, args);
+    try {
+      ps.setFetchSize(fetch);
+      return ps.executeQuery();
+    }
+    catch(SQLException e) { lease.check(e); throw e; }
+  }
+
+  /** batch(sql, args) adds a row to the batch of the SQL template's statement;
+    * it's sent with the rest of the batch by flush() (or commit()).
+    *
+    * @param sql The SQL template, with '?' for every parameter
+    * @param args The values of the parameters */
+
+  public void batch(String sql, Object... args) throws SQLException {
+    PreparedStatement ps = lease.prepare(sql, args);
+    try { ps.addBatch(); }
+    catch(SQLException e) { lease.check(e); throw e; }
+    batched.add(ps);
+  }
+
+  /** flush() sends every batch, statement by statement in the order they were
+    * first batched, and returns the rows each batched row affected.
+    *
+    * @return The update counts of the batched rows, in the order batched by
+    *   statement */
+
+  public int[] flush() throws SQLException {
+    ArrayList<int[]> counts = new ArrayList<>();
+    int n = 0;
+
+    try {
+      for(PreparedStatement ps : batched) {
+        int[] c = ps.executeBatch();
+        counts.add(c);
+        n += c.length;
+      }
+    }
+    catch(SQLException e) { lease.check(e); throw e; }
+    finally { batched.clear(); }
+
+    int[] all = new int[n];
+    n = 0;
+    for(int[] c : counts) {
+      System.arraycopy(c, 0, all, n, c.length);
+      n += c.length;
+    }
+    return all;
+  }
+
+  /** afterCommit(r) runs r once the outermost work commits; it's dropped if
+    * the work rolls back instead.
+    *
+    * @param r What to run after the commit */
+
+  public void afterCommit(Runnable r) { lease.afterCommit(r); }
+
+  /** savepoint() marks a point the work can be rolled back to */
+
+  public Savepoint savepoint() throws SQLException { return tx.setSavepoint(); }
+
+  /** rollback(sp) undoes the work done since the savepoint, keeping the rest */
+
+  public void rollback(Savepoint sp) throws SQLException {
+    clearBatches();
+    tx.rollback(sp);
+  }
+
+  /** commit() sends any batches and commits the work (or, for nested work,
+    * releases its savepoint so the outer work commits it). */
+
+  public void commit() throws SQLException {
+    if (done) { throw new SQLException("The work has already ended"); }
+
+    try {
+      flush();
+      if (outer == null) { tx.commit(); }
+      else { tx.releaseSavepoint(outer); }
+      done = true;
+    }
+    catch(SQLException e) { lease.check(e); throw e; }
+
+    if (outer == null) { lease.ended(true); }
+  }
+
+  /** rollback() undoes the work (back to its savepoint, if nested) */
+
+  public void rollback() throws SQLException {
+    if (done) { return; }
+    done = true;
+    clearBatches();
+
+    if (outer == null) { lease.ended(false); tx.rollback(); }
+    else { lease.drop(held); tx.rollback(outer); }
+  }
+
+  /** close() rolls back the work if it wasn't committed, and gives up its
+    * hold on the lease. */
+
+  public void close() throws SQLException {
+    try {
+      if (!done) { rollback(); }
+      if (outer == null) { tx.setAutoCommit(true); }
+    }
+    catch(SQLException e) { lease.check(e); throw e; }
+    finally { lease.close(); }
+  }
+
+  private void clearBatches() {
+    for(PreparedStatement ps : batched) {
+      try { ps.clearBatch(); } catch(SQLException e) {}
+    }
+    batched.clear();
+  }
+
+  /** isRetryable(e) returns true if the error aborted the transaction for a
+    * serialization failure (40001) or deadlock (40P01), which rerunning the
+    * work may get past. */
+
+  public static boolean isRetryable(SQLException e) {
+    String st = e.getSQLState();
+    return "40001".equals(st) || "40P01".equals(st);
+  }
+}
@@ -14,31 +14,36 @@
   * Author: Matthew Morgan
   */
 
-import java.io.BufferedWriter;
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.time.LocalDate;
-import java.time.Period;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import src.state.*;
 import src.people.*;
 import src.account.*;
 import src.store.Store;
 import src.gen.Question;
+import src.out.*;
 import src.*;
 
+import static src.out.Table.Type.*;
+
 public class Main {
-  // FILE_OUT_QUERY is where all SQL queries get written to
-  // FILE_OUT_TRANS is where all SQL queries for transactions get written
+  // DIR_OUT is the directory all output gets written to
+  // GROUP_TRANS is the SQL file (under DIR_OUT) transactions get written to,
+  //   while every other table is written to query.sql
   // FILE_IN_STATE is the path of a text file storing data for country gen
   // FILE_IN_CUST is the path of a text file storing data for customer gen
   // FILE_IN_REC is the path of a text file storing recovery questions
   // FILE_IN_STORE is the path of a text file storing info about stores
-  static final String FILE_OUT_QUERY = "./data/query.sql",
-    FILE_OUT_TRANS = "./data/query-trans.sql",
+  static final String DIR_OUT = "./data",
+    GROUP_TRANS = "query-trans",
     FILE_IN_STATE = "./data/in-state.txt",
     FILE_IN_CUST = "./data/in-name.txt",
     FILE_IN_REC = "./data/in-recovery.txt",
@@ -49,28 +54,50 @@ public class Main {
   // PER_OFFLINE is the percentage of customers with accounts
   static final double PER_EMP = .25, PER_ONLINE = .3, PER_OFFLINE = .8;
   
-  // Arrays holding all tuple column names (excluding some IDs because of
-  // the serialization of those columns).
+  // Tables holding all tuple column names and types (excluding some IDs
+  // because of the serialization of those columns), and the layout of their
+  // SQL output. Customers and employees are numbered by the database (and
+  // referred to by those numbers), so they are never sharded.
   // + Customer CID
   // + Employee EID
   // + Transaction TID
   // + Dispute DID
-  static final String[]
-    TBL_REC = {"CID", "RID", "Date", "Question", "Answer"},
-    TBL_EMP = {"Date_Start", "Date_End", "CID", "Sup_EID"},
-    TBL_CUST = {"SSN", "Fname", "Lname", "Gender", "DOB", "Con_Email",
-      "Con_Phone", "Street", "Apt", "City", "Zip", "State"},
-    TBL_CARD = {"Number", "Exp_Date", "Sec_Code", "Status", "AID", "CID", "PIN"},
-    TBL_ACCT = {"AID", "Type", "Date_Open", "Date_Close", "Balance", "Int_Rate",
-      "Int_Comp", "Month_Fee"},
-    TBL_TRAN = {"AID", "isPending", "Type", "Date", "Desc", "Amount",
-      "Rec_Route", "Rec_AID", "DID"},
-    TBL_DISP = {"AID", "Date", "Reason", "Status", "Handler"},
-    TBL_ACCT_ON = {"CID", "Username", "Password"},
-    TBL_ACCTOWN = {"AID", "CID"};
+  static final Table
+    TBL_CUST = new Table("Customer",
+      new String[] {"SSN", "Fname", "Lname", "Gender", "DOB", "Con_Email",
+        "Con_Phone", "Street", "Apt", "City", "Zip", "State"},
+      TEXT, TEXT, TEXT, TEXT, DATE, TEXT, TEXT, TEXT, TEXT, TEXT, INT, TEXT).ordered(),
+    TBL_EMP = new Table("Employee",
+      new String[] {"Date_Start", "Date_End", "CID", "Sup_EID"},
+      DATE, DATE, INT, INT).layout(3, 0, 12, 3, 3).nullAs(3, "null")
+      .refs(TBL_CUST).ordered(),
+    TBL_ACCT = new Table("Account",
+      new String[] {"AID", "Type", "Date_Open", "Date_Close", "Balance",
+        "Int_Rate", "Int_Comp", "Month_Fee"},
+      BIGINT, TEXT, DATE, DATE, FLOAT, FLOAT, TEXT, FLOAT).layout(1, 0, 0, 0, 12, 0, 0, 0, 0),
+    TBL_ACCT_ON = new Table("Account_Online",
+      new String[] {"CID", "Username", "Password"},
+      INT, TEXT, TEXT).layout(3, 3, 20, 0).refs(TBL_CUST),
+    TBL_REC = new Table("Recovery_Question",
+      new String[] {"CID", "RID", "Date", "Question", "Answer"},
+      INT, INT, DATE, TEXT, TEXT).refs(TBL_ACCT_ON),
+    TBL_ACCTOWN = new Table("Account_Owner",
+      new String[] {"AID", "CID"},
+      BIGINT, INT).layout(4, 0, 3).refs(TBL_CUST, TBL_ACCT),
+    TBL_CARD = new Table("Card",
+      new String[] {"Number", "Exp_Date", "Sec_Code", "Status", "AID", "CID", "PIN"},
+      TEXT, DATE, TEXT, TEXT, BIGINT, INT, TEXT).refs(TBL_CUST, TBL_ACCT),
+    TBL_TRAN = new Table("Transaction",
+      new String[] {"AID", "isPending", "Type", "Date", "Desc", "Amount",
+        "Rec_Route", "Rec_AID", "DID"},
+      BIGINT, BOOL, TEXT, DATE, TEXT, FLOAT, TEXT, TEXT, INT).refs(TBL_ACCT),
+    TBL_DISP = new Table("Dispute",
+      new String[] {"AID", "Date", "Reason", "Status", "Handler"},
+      BIGINT, DATE, TEXT, TEXT, INT).refs(TBL_ACCT, TBL_EMP);
 
   // DEBUG_ENABLED toggles the printing of debug messages
   // SKIP_TRANS toggles skipping of purchase transaction generation
+  // STREAM_TRANS toggles writing transactions out as they are generated
   // country is the country storing all state/city/street information
   // cust stores all information about customers
   // emp stores all information about employees
@@ -78,11 +105,16 @@ public class Main {
   // accOn stores all online accounts
   // accoff stores all offline accounts
   // acp stores all account-customer pairs as a list
+  // index resolves owners, home states, and branches of offline accounts
   // cards stores all the cards for accounts
-  // trans stores all transactions
+  // trans stores all transactions (unless they are being streamed)
+  // spill is the number of transactions kept on the heap before 'trans'
+  //   spills the rest to a memory-mapped file
+  // out hands out the sinks of the output format chosen
+  // transOut is the sink transactions are written to, once it is begun
   // branches stores the routing and AIDs of the different bank branches
   // stores is a collection of stores for usage in generating transactions
-  static boolean DEBUG_ENABLED = false, SKIP_TRANS = false;
+  static boolean DEBUG_ENABLED = false, SKIP_TRANS = false, STREAM_TRANS = false;
   static Country country = Country.getCountry();
   static Customer[] cust;
   static Employee[] emp;
@@ -90,20 +122,66 @@ public class Main {
   static Online[] accOn;
   static Offline[] accOff;
   static ArrayList<ACP> acp = new ArrayList<>();
+  static AccountIndex index;
   static ArrayList<Card> cards = new ArrayList<>();
-  static ArrayList<Transaction> trans = new ArrayList<>();
+  static TransactionStore trans;
+  static long spill = 1 << 22;
+  static Output out;
+  static Sink transOut = null;
   static Branch[] branches;
   static ArrayList<Store> stores = new ArrayList<>();
 
   public static void main(String[] args) {
+    // seed is the seed for reproducible generation, or null for none
+    // threads is the number of threads entities are generated on
+    // format is the output format
+    // shards is the number of files each table is spread over
+    // db, dbUser, and dbPass give the database to load into, if any
+    // batch and commit are the rows per batch and per commit when loading
+    // copy toggles loading with COPY rather than batched inserts
+    Long seed = null;
+    int threads = 1, shards = 1, batch = 1000, commit = 100000;
+    Output.Format format = Output.Format.SQL;
+    String db = null, dbUser = "postgres", dbPass = "";
+    boolean copy = true;
+
     // Argument catcher
-    for(String arg : args) {
-      switch(arg) {
+    for(int i=0; i<args.length; i++) {
+      switch(args[i]) {
         case "-d": DEBUG_ENABLED = true; break;
         case "-st": SKIP_TRANS = true; break;
+        case "-stream": STREAM_TRANS = true; break;
+        case "-perm": Uniquifier.setMode(Uniquifier.Mode.PERM); break;
+        case "-seed": seed = Long.parseLong(args[++i]); break;
+        case "-threads": threads = Integer.parseInt(args[++i]); break;
+        case "-spill": spill = Long.parseLong(args[++i]); break;
+        case "-out": format = Output.parse(args[++i]); break;
+        case "-shards": shards = Integer.parseInt(args[++i]); break;
+        case "-db": db = args[++i]; format = Output.Format.DB; break;
+        case "-dbuser": dbUser = args[++i]; break;
+        case "-dbpass": dbPass = args[++i]; break;
+        case "-batch": batch = Integer.parseInt(args[++i]); break;
+        case "-commit": commit = Integer.parseInt(args[++i]); break;
+        case "-insert": copy = false; break;
       }
     }
 
+    // Multiple threads need per-entity streams, so pick a seed if none was
+    // given (and show it, so the run can be reproduced)
+    if (seed == null && threads > 1) {
+      seed = new java.util.Random().nextLong();
+      System.out.println("Using seed "+seed);
+    }
+    if (seed != null)
+      Parallel.setup(threads, seed);
+
+    // Transactions can't be loaded before their accounts are, so streaming
+    // them would only pile them up in memory
+    if (format == Output.Format.DB && STREAM_TRANS) {
+      System.out.println("Transactions are not streamed when loading a database");
+      STREAM_TRANS = false;
+    }
+
     try {
       // Phase 01 : Customer address generation and employees
       System.out.println("Building Country, Customers, Employees");
@@ -120,13 +198,28 @@ public class Main {
 
       // Phase 03: Transactions and Disputes
       System.out.println("Building Transactions and Disputes");
+      out = new Output(format, new File(DIR_OUT));
+      out.group(TBL_TRAN, GROUP_TRANS);
+      out.setShards(shards);
+      if (db != null) {
+        JdbcTarget target = new JdbcTarget(db, dbUser, dbPass);
+        target.setBatch(batch);
+        target.setCommit(commit);
+        target.setCopy(copy);
+        out.setTarget(target);
+      }
+      trans = new TransactionStore(spill, new File(DIR_OUT));
+      if (STREAM_TRANS && !SKIP_TRANS)
+        transOut = out.begin(TBL_TRAN);
       expandCountry();
       buildBranches();
       if (!SKIP_TRANS)
         buildTransactions();
 
-      System.out.println("Printing SQL statements to file");
+      System.out.println(format == Output.Format.DB ? "Loading tables into the database" :
+        "Printing "+format+" output to file");
       printSQL();
+      Parallel.shutdown();
     }
     catch(IOException e) {
       // File handling exception
@@ -155,29 +248,6 @@ public class Main {
       System.out.print(str + (newLn ? "\n": ""));
   }
 
-  /** sqlHead(name, col) returns a string that comprises the heading of an
-    * 'insert into' SQL statement that lists the table name and column headers
-    * with proper quotation.
-    *
-    * @param name The name of the table the data will go into
-    * @param col A list of column names for the tuple
-    * @return The start of an 'insert into' SQL query */
-
-  private static String sqlHead(String name, String[] col) {
-    String tuple = "(";
-
-    for(int i=0; i<col.length; i++)
-      tuple += "\""+col[i]+"\"" + (i==col.length-1 ? ")" : ",");
-
-    return "INSERT INTO \""+name+"\""+tuple+" VALUES ";
-  }
-
-  /** getBranch(i) gets the branch for the i-th offline account */
-
-  private static int getBranch(int i) {
-    return cust[ACP.getAIDCust(acp, accOff[i].getAID())].getState();
-  }
-
   /****************************************************************************/
   /** buildEmployees() takes the set of customers and generates a subset of
     * employees from them, randomly generating a hierarchy of supervision by
@@ -186,29 +256,32 @@ public class Main {
   public static void buildEmployees() {
     emp = new Employee[ (int)(cust.length * PER_EMP) ];
     printDebug("Employee generation: (CID,Age,Sup)");
+
+    // Only customers that are of age may be chosen as employees
+    int[] cand = new int[cust.length];
+    int n = 0;
+    for(int i=0; i<cust.length; i++)
+      if (cust[i].getAge() >= Employee.YR_MIN) { cand[n++] = i; }
+
+    if (n < emp.length)
+      throw new IllegalStateException("Only "+n+" customers are old enough to be employees");
+
+    // sample draws unique customers for employees
+    // working lists the employees that are still working at the institution
+    Sampler sample = new Sampler(Arrays.copyOf(cand, n));
+    int[] working = new int[emp.length];
+    int numWorking = 0;
     
     for(int i=0; i<emp.length; i++) {
-      boolean flag = false;
-      int cid;
-
-      // Choose a unique customer ID to make a new employee
-      // The selected customer must be of age
-      do {
-        flag = false; cid = Helper.randomRange(0, cust.length-1);
-        for(int k=0; k<i; k++) { if (emp[k].getCID() == cid) { flag = true; } }
-        if (cust[cid].getAge() < Employee.YR_MIN) { flag = true; }
-      }
-      while(flag);
+      int cid = sample.next();
 
       emp[i] = new Employee(cust[cid], cid, i);
 
       // Get a supervisor that is still working at the institution
-      if (i > 0) {
-        int id;
-        do { id = Helper.randomRange(0, i-1); }
-        while(emp[id].getEnd() != null);
-        emp[i].setSup(id);
-      }
+      if (i > 0)
+        emp[i].setSup(working[Helper.randomRange(0, numWorking-1)]);
+      if (emp[i].getEnd() == null)
+        working[numWorking++] = i;
 
       printDebug(String.format(" (%3d,%2d,%3d)", cid, cust[cid].getAge(), emp[i].getSup()),
         i % 10 == 9 || i == emp.length-1);
@@ -224,18 +297,11 @@ public class Main {
     accOn = new Online[ (int) (cust.length * PER_ONLINE) ];
     printDebug("Online account generation");
 
-    for(int i=0; i<accOn.length; i++) {
-      int cid;
-      boolean flag = false;
+    // Select a unique CID every iteration
+    Sampler sample = new Sampler(cust.length);
 
-      // Select a unique CID every iteration
-      do {
-        flag = false;
-        cid = Helper.randomRange(0, cust.length-1);
-        for(int k=0; k<i; k++)
-          if (accOn[k].getCID() == cid) { flag = true; }
-      }
-      while(flag);
+    for(int i=0; i<accOn.length; i++) {
+      int cid = sample.next();
 
       accOn[i] = new Online(cust[cid], set, cid);
       printDebug(String.format(" %3d", cid),
@@ -252,53 +318,65 @@ public class Main {
     accOff = new Offline[ (int) (cust.length * PER_OFFLINE) ];
     printDebug("Account-Customer pairing");
 
-    for(int i=0; i<accOff.length; i++) {
-      int cid;
-      boolean flag = false;
+    // Select a unique customer for every account
+    Sampler sample = new Sampler(cust.length);
+    int[] owner = new int[accOff.length];
 
-      // Select a unique customer for every account
-      do {
-        flag = false;
-        cid = Helper.randomRange(0, cust.length-1);
-        for(ACP pair : acp) { if (pair.cid == cid) { flag = true; } }
-      }
-      while(flag);
+    for(int i=0; i<accOff.length; i++)
+      owner[i] = sample.next();
+
+    // Generate the accounts themselves in parallel
+    Parallel.forEach(accOff.length, "acct", i ->
+      accOff[i] = new Offline(cust[owner[i]], i));
 
-      accOff[i] = new Offline(cust[cid]);
+    index = new AccountIndex(accOff.length);
 
-      // Add account-customer pair to the acp list
-      ACP pair = new ACP(cid, accOff[i].getAID());
+    for(int i=0; i<accOff.length; i++) {
+      // Add account-customer pair to the acp list and the index
+      ACP pair = new ACP(owner[i], accOff[i].getAID());
       acp.add(pair);
+      index.add(i, pair.aid, pair.cid, cust[pair.cid].getState());
 
       printDebug(String.format(" (%s,%3d)", pair.aid, pair.cid),
         i % 8 == 7 || i == accOff.length-1);
     }
   }
 
+  // CARD_STRIDE is the number of card indices set aside for every account
+  private static final int CARD_STRIDE = 64;
+
   /** buildCards() assigns cards to every account from the date that they opened
     * to either an expiry date being after the present day, or after the account
-    * closed. It assigns multiple cards to the accounts. */
+    * closed. It assigns multiple cards to the accounts. (The cards of every
+    * account are generated in parallel, and then collected in account order.) */
 
   public static void buildCards() {
+    List<List<Card>> per = new ArrayList<>(Collections.nCopies(accOff.length, null));
     printDebug("Cards processing");
 
-    for(int i=0; i<accOff.length; i++) {
+    Parallel.forEach(accOff.length, "card", i -> {
       LocalDate date = accOff[i].getOpen(), cl = accOff[i].getClose();
+      ArrayList<Card> L = new ArrayList<>();
 
       printDebug(" "+accOff[i].getAID(), i % 10 == 9 || i == accOff.length-1);
 
       // Add cards for every three years to the account
       do {
-        cards.add(new Card(accOff[i].getAID(), ACP.getAIDCust(acp, accOff[i].getAID())));
-        cards.get(cards.size()-1).setDate(date);
+        L.add(new Card(accOff[i].getAID(), index.owner(i),
+          (long)i * CARD_STRIDE + L.size()));
+        L.get(L.size()-1).setDate(date);
         date = date.plusYears(3);
       }
       while(cl == null ? date.isBefore(LocalDate.now()) : date.isBefore(cl));
 
       // Activate the last card if the account isn't closed
       if (cl != null)
-        cards.get(cards.size()-1).setStatus(Card.Status.ACTIVE);
-    }
+        L.get(L.size()-1).setStatus(Card.Status.ACTIVE);
+
+      per.set(i, L);
+    });
+
+    for(List<Card> L : per) { cards.addAll(L); }
   }
 
   /****************************************************************************/
@@ -345,21 +423,21 @@ public class Main {
     * different states of the country, and then uses those numbers to initialize
     * each account's first transaction. */
 
-  public static void buildBranches() {
+  public static void buildBranches() throws IOException {
     // Generate routing numbers for bank branches (one per state)
     branches = new Branch[country.numStates()];
     for(int i=0; i<branches.length; i++)
       branches[i] = new Branch();
+    index.setBranches(branches);
     
     // Generate initial transaction
     printDebug("Transactions (Initial)");
+    long today = LocalDate.now().toEpochDay();
     for(int i=0; i<accOff.length; i++) {
-      trans.add(
-        new Transaction(
-          accOff[i].getAID(), branches[getBranch(i)].route,
-          accOff[i].getAID(), "COUNTER DEPOSIT", accOff[i].getBal(),
-          accOff[i].getOpen(), Transaction.Type.CREDIT)
-      );
+      long day = accOff[i].getOpen().toEpochDay();
+      addTrans(Long.parseLong(accOff[i].getAID()), today - day < 5, Transaction.Type.CREDIT,
+        day, "COUNTER DEPOSIT", Helper.toCents(accOff[i].getBal()), index.route(i),
+        accOff[i].getAID());
       printDebug(" "+accOff[i].getAID(), i % 10 == 9 || i == accOff.length-1);
     }
   }
@@ -368,185 +446,280 @@ public class Main {
   // PER_FEE is the number of days between each monthly fee charge
   private static final int PER_WORK = 14, PER_FEE = 31;
 
+  // CHUNK_TRANS is the number of accounts simulated before their histories
+  // are handed over (which bounds memory use while streaming)
+  private static final int CHUNK_TRANS = 64;
+
+  // storeDesc is the description of a purchase at each store, by index
+  private static String[] storeDesc;
+
   /** buildTransactions() builds all the transactions that apply to the different
     * accounts, including work-related deposits, monthly account fees, as well
     * as randomized spending throughout the lifetime of the account. As the
     * transactions are made, the balance is updated, and if the account cannot
-    * make a purchase, the transaction is disregarded. */
+    * make a purchase, the transaction is disregarded. (Accounts are simulated
+    * in parallel chunks, and their histories handed over in account order.) */
 
-  public static void buildTransactions() {
+  public static void buildTransactions() throws IOException {
+    List<History> per = new ArrayList<>(Collections.nCopies(CHUNK_TRANS, null));
     printDebug("Transactions (Purchases)");
 
-    for(int i=0; i<accOff.length; i++) {
-      // trkCred is a credit the person earns from work every 14 days
-      // trkFee is the monthly fee tracker that arises every 31 days
-      // earn is an RNGed lower/upper bound for the person's 'paycheck'
-      int trkCred = 0, trkFee = 0;
-      int[] earn = {Helper.randomRange(175,225), Helper.randomRange(400,550)};
-      LocalDate date = accOff[i].getOpen();
-
-      // Stop generating transactions when we surpass the closure date or
-      // the present day
-      while(date.isBefore(LocalDate.now()) || (accOff[i].getClose()!=null && date.isBefore(accOff[i].getClose()))) {
-        // inc determines how much to increment the date for the next trans
-        int inc = Helper.randomRange(1, 5), numToday = Helper.randomRange(1,2);
-
-        // Check the credit tracker
-        if (trkCred >= PER_WORK) {
-          trkCred %= PER_WORK;
-
-          trans.add(
-            new Transaction(
-              accOff[i].getAID(), branches[getBranch(i)].route, accOff[i].getAID(),
-              (Helper.randomRange(0,1) == 0 ? "COUNTER" : "DIRECT")+" DEPOSIT",
-              Helper.randomRange(earn[0], earn[1]),
-              date.minus(Period.ofDays(trkCred)), Transaction.Type.CREDIT
-            ));
-
-          accOff[i].credit(trans.get(trans.size()-1).getAmount());
-        }
-        else { trkCred += inc; }
+    storeDesc = new String[stores.size()];
+    for(int k=0; k<storeDesc.length; k++) { storeDesc[k] = stores.get(k).getName().toUpperCase(); }
 
-        // Check the monthly fee tracker
-        if (trkFee >= PER_FEE && accOff[i].getFee() > 0.0) {
-          trkFee %= PER_FEE;
+    for(int c=0; c<accOff.length; c+=CHUNK_TRANS) {
+      final int base = c;
 
-          trans.add(
-            new Transaction(
-              accOff[i].getAID(), branches[getBranch(i)].route,
-              branches[getBranch(i)].aid, "ACCOUNT MONTHLY FEE",
-              accOff[i].getFee(), date.minus(Period.ofDays(trkFee)),
-              Transaction.Type.DEBIT
-            ));
+      Parallel.forEach(base, Math.min(base+CHUNK_TRANS, accOff.length), "trans", i -> {
+        per.set(i-base, simulate(i));
+        printDebug(" "+accOff[i].getAID(), i % 10 == 9 || i == accOff.length-1);
+      });
 
-          accOff[i].debit(trans.get(trans.size()-1).getAmount());
-        }
-        else { trkFee += inc; }
-
-        // Regular transactions - only make the purchase if the account has
-        // enough funds to make the purchase
-        for(int k=0; k<numToday; k++) {
-          Store s = stores.get(Helper.randomRange(0, stores.size()-1));
-          double charge = s.getPrice();
-
-          if (accOff[i].hasBal(charge)) {
-            trans.add( new Transaction(
-              accOff[i].getAID(), s.getRoute(), s.getAID(), s.getName().toUpperCase(),
-              charge, date, Transaction.Type.DEBIT
-            ));
-            
-            accOff[i].debit(charge);
-            //printDebug("Transaction on "+accOff[i].getAID()+
-            //  " for $"+String.format("%.2f",charge)+" to '"+s.getName()+"'");
-          }
-        }
+      for(int i=0; i<CHUNK_TRANS && base+i<accOff.length; i++) {
+        History h = per.get(i);
+        for(int r=0; r<h.size(); r++)
+          addTrans(h.getAID(), h.isPending(r), h.getType(r), h.getDay(r), h.getDesc(r),
+            h.getCents(r), h.getRecRoute(r), h.getRecAID(r));
+        per.set(i, null);
+      }
+    }
+  }
+
+  /** addTrans(...) hands a generated transaction over to the output, from
+    * its column values. Streamed transactions are written out immediately,
+    * and others are kept in 'trans' until printSQL() writes them. */
+
+  private static void addTrans(long aid, boolean pend, Transaction.Type type, long day,
+    String desc, long cents, String rr, String ra) throws IOException {
+    if (SKIP_TRANS) { return; }
+
+    if (transOut != null) { writeTrans(aid, pend, type, day, desc, cents, rr, ra, 0); }
+    else { trans.add(aid, day, cents, type, desc, rr, ra, pend); }
+  }
+
+  /** writeTrans(...) writes a single transaction tuple to transOut from its
+    * column values (as kept by TransactionStore). */
+
+  private static void writeTrans(long aid, boolean pend, Transaction.Type type, long day,
+    String desc, long cents, String rr, String ra, int did) throws IOException {
+    transOut.row(aid);
+    transOut.code(aid, 12);
+    transOut.bool(pend);
+    transOut.str(type.name());
+    transOut.date(day);
+    transOut.str(desc);
+    transOut.money(cents);
+    transOut.str(rr);
+    transOut.str(ra);
+    if (did == 0) { transOut.nul(); }
+    else { transOut.num(did); }
+    transOut.endRow();
+  }
+
+  /** writeTrans(row) writes the row of the transaction store to transOut */
+
+  private static void writeTrans(long row) throws IOException {
+    writeTrans(trans.getAID(row), trans.isPending(row), trans.getType(row),
+      trans.getDay(row), trans.getDesc(row), trans.getCents(row),
+      trans.getRecRoute(row), trans.getRecAID(row), trans.getDID(row));
+  }
+
+  /** simulate(i) simulates the history of the i-th offline account from the
+    * day it opened. Rows go straight into the account's History as column
+    * values, so no Transaction is made per row.
+    *
+    * @param i The index of the account to simulate
+    * @return The account's transactions, oldest first */
+
+  private static History simulate(int i) {
+    // trkCred is a credit the person earns from work every 14 days
+    // trkFee is the monthly fee tracker that arises every 31 days
+    // earn is an RNGed lower/upper bound for the person's 'paycheck'
+    int trkCred = 0, trkFee = 0;
+    int[] earn = {Helper.randomRange(175,225), Helper.randomRange(400,550)};
+    LocalDate date = accOff[i].getOpen();
+
+    // aid, route, and branch are the account's own and its branch's numbers;
+    // a transaction within 5 days of today is pending
+    String aid = accOff[i].getAID(), route = index.route(i), branch = index.branchAID(i);
+    History h = new History(Long.parseLong(aid));
+    long today = LocalDate.now().toEpochDay();
+
+    // Stop generating transactions when we surpass the closure date or
+    // the present day
+    while(date.isBefore(LocalDate.now()) || (accOff[i].getClose()!=null && date.isBefore(accOff[i].getClose()))) {
+      // inc determines how much to increment the date for the next trans
+      int inc = Helper.randomRange(1, 5), numToday = Helper.randomRange(1,2);
+      long day = date.toEpochDay();
+
+      // Check the credit tracker
+      if (trkCred >= PER_WORK) {
+        trkCred %= PER_WORK;
+
+        String desc = Helper.randomRange(0,1) == 0 ? "COUNTER DEPOSIT" : "DIRECT DEPOSIT";
+        int amt = Helper.randomRange(earn[0], earn[1]);
+        long d = day - trkCred;
+        h.add(d, amt * 100L, Transaction.Type.CREDIT, desc, route, aid, today - d < 5);
+        accOff[i].credit(amt);
+      }
+      else { trkCred += inc; }
+
+      // Check the monthly fee tracker
+      if (trkFee >= PER_FEE && accOff[i].getFee() > 0.0) {
+        trkFee %= PER_FEE;
 
-        date = date.plusDays(inc);
+        double fee = accOff[i].getFee();
+        long d = day - trkFee;
+        h.add(d, Helper.toCents(fee), Transaction.Type.DEBIT, "ACCOUNT MONTHLY FEE",
+          route, branch, today - d < 5);
+        accOff[i].debit(fee);
+      }
+      else { trkFee += inc; }
+
+      // Regular transactions - only make the purchase if the account has
+      // enough funds to make the purchase
+      for(int k=0; k<numToday; k++) {
+        int si = Helper.randomRange(0, stores.size()-1);
+        Store s = stores.get(si);
+        double charge = s.getPrice();
+
+        if (accOff[i].hasBal(charge)) {
+          h.add(day, Helper.toCents(charge), Transaction.Type.DEBIT, storeDesc[si],
+            s.getRoute(), s.getAID(), today - day < 5);
+          accOff[i].debit(charge);
+        }
       }
 
-      printDebug(" "+accOff[i].getAID(), i % 10 == 9 || i == accOff.length-1);
+      date = date.plusDays(inc);
     }
+    return h;
   }
 
-  /** printSQL() prints all of the insert into statements for the tables in
-    * the database. It takes care of fetching the necessary values from each
-    * class, and forming them into a tuple based on the column order above. */
+  /** printSQL() writes all of the tables in the database to their sinks, in
+    * an order that is safe for foreign keys. It takes care of fetching the
+    * necessary values from each class, and forming them into a tuple based on
+    * the column order above. */
 
   public static void printSQL() throws IOException {
-    BufferedWriter w = new BufferedWriter(new FileWriter(FILE_OUT_QUERY));
-
     // Customer information
-    w.write(sqlHead("Customer", TBL_CUST)+"\n");
+    Sink w = out.begin(TBL_CUST);
     for(int i=0; i<cust.length; i++) {
       Customer c = cust[i];
       State s = country.getState(c.getState());
       City ct = s.getCity(c.getCity());
 
-      w.write(String.format(
-        "  ('%s', '%s', '%s', '%c', '%s', '%s', '%s', '%s', NULL, '%s', %d, '%s')%s",
-        c.getSSN(), c.getFirstName().replaceAll("'","''"),
-        c.getLastName().replaceAll("'","''"), c.getSex(),
-        c.getDOBStr(), c.getEmail(), s.getCode(c.getCity())+c.getPhone(),
-        c.getHouse()+" "+ct.getStreet(c.getStreet()), ct.getName(),
-        ct.getZip(), s.getName(),
-        (i==cust.length-1 ? ";\n" : ",\n")
-      ));
+      w.row();
+      w.str(c.getSSN());
+      w.str(c.getFirstName());
+      w.str(c.getLastName());
+      w.chr(c.getSex());
+      w.date(c.getDOB().toEpochDay());
+      w.str(c.getEmail());
+      w.str(s.getCode(c.getCity())+c.getPhone());
+      w.str(c.getHouse()+" "+ct.getStreet(c.getStreet()));
+      w.nul();
+      w.str(ct.getName());
+      w.num(ct.getZip());
+      w.str(s.getName());
+      w.endRow();
     }
+    out.end(TBL_CUST);
 
     // Employee
-    w.write(sqlHead("Employee", TBL_EMP)+"\n");
-    for(int i=0; i<emp.length; i++)
-      w.write(String.format("  ('%s', %12s, %3d, %3s)%s",
-        emp[i].getStartStr(),
-        (emp[i].getEnd()==null ? "NULL" : "'"+emp[i].getEndStr()+"'"),
-        emp[i].getCID()+1, emp[i].getSup(),
-        (i==emp.length-1 ? ";\n" :
-          (i%3==2 ? ",\n" : ", "))));
-    
+    w = out.begin(TBL_EMP);
+    for(int i=0; i<emp.length; i++) {
+      w.row();
+      w.date(emp[i].getStart().toEpochDay());
+      if (emp[i].getEnd() == null) { w.nul(); }
+      else { w.date(emp[i].getEnd().toEpochDay()); }
+      w.num(emp[i].getCID()+1);
+      if (emp[i].getSup() == null) { w.nul(); }
+      else { w.num(emp[i].getSup()); }
+      w.endRow();
+    }
+    out.end(TBL_EMP);
+
     // Account_Online
-    w.write(sqlHead("Account_Online", TBL_ACCT_ON)+"\n");
-    for(int i=0; i<accOn.length; i++)
-      w.write(String.format("  (%3d, %20s, '%s')%s",
-        accOn[i].getCID()+1, "'"+accOn[i].getUser()+"'", accOn[i].getPass(),
-        (i==accOn.length-1 ? ";\n" :
-          (i%3==2 ? ",\n" : ", "))));
+    w = out.begin(TBL_ACCT_ON);
+    for(int i=0; i<accOn.length; i++) {
+      w.row(accOn[i].getCID());
+      w.num(accOn[i].getCID()+1);
+      w.str(accOn[i].getUser());
+      w.str(accOn[i].getPass());
+      w.endRow();
+    }
+    out.end(TBL_ACCT_ON);
 
     // Recovery_Question
-    w.write(sqlHead("Recovery_Question", TBL_REC)+"\n");
+    w = out.begin(TBL_REC);
     for(int i=0; i<accOn.length; i++) {
+      long day = LocalDate.parse(accOn[i].getDate()).toEpochDay();
+
       for(int k=0; k<Online.QUE_COUNT; k++) {
-        w.write(String.format("  (%d, %d, '%s', '%s', '%s')%s",
-          accOn[i].getCID()+1, k, accOn[i].getDate(),
-          set.getQuestion(accOn[i].getQue(k)),
-          set.getAnswer(accOn[i].getQue(k), accOn[i].getAns(k)),
-          (k == Online.QUE_COUNT-1 ? "" : ",\n")));
+        w.row(accOn[i].getCID());
+        w.num(accOn[i].getCID()+1);
+        w.num(k);
+        w.date(day);
+        w.str(set.getQuestion(accOn[i].getQue(k)));
+        w.str(set.getAnswer(accOn[i].getQue(k), accOn[i].getAns(k)));
+        w.endRow();
       }
-      w.write(i==accOn.length-1 ? ";\n" : ",\n");
     }
+    out.end(TBL_REC);
 
     // Account
-    w.write(sqlHead("Account", TBL_ACCT)+"\n");
+    w = out.begin(TBL_ACCT);
     for(int i=0; i<accOff.length; i++) {
-      w.write(String.format("  ('%s', '%s', '%s', %12s, %.2f, %1.5f, '%s', %.2f)%s",
-        accOff[i].getAID(), accOff[i].getType(), accOff[i].getOpenStr(),
-        accOff[i].getClose() == null ? "NULL" : "'"+accOff[i].getCloseStr()+"'",
-        accOff[i].getBal(), accOff[i].getRate(), accOff[i].getComp(),
-        accOff[i].getFee(),
-        i==accOff.length-1 ? ";\n" : ",\n"));
+      w.row(Long.parseLong(accOff[i].getAID()));
+      w.str(accOff[i].getAID());
+      w.str(accOff[i].getType());
+      w.date(accOff[i].getOpen().toEpochDay());
+      if (accOff[i].getClose() == null) { w.nul(); }
+      else { w.date(accOff[i].getClose().toEpochDay()); }
+      w.dec(accOff[i].getBal(), 2);
+      w.dec(accOff[i].getRate(), 5);
+      w.str(accOff[i].getComp());
+      w.dec(accOff[i].getFee(), 2);
+      w.endRow();
     }
+    out.end(TBL_ACCT);
 
     // Account_Owner
-    w.write(sqlHead("Account_Owner", TBL_ACCTOWN)+"\n");
-    for(int i=0; i<acp.size(); i++)
-      w.write(String.format("  ('%s', %3d)%s",
-        acp.get(i).aid, acp.get(i).cid+1,
-        (i==acp.size()-1 ? ";\n" :
-         (i%4==3 ? ",\n" : ", "))));
-      
+    w = out.begin(TBL_ACCTOWN);
+    for(int i=0; i<acp.size(); i++) {
+      w.row(Long.parseLong(acp.get(i).aid));
+      w.str(acp.get(i).aid);
+      w.num(acp.get(i).cid+1);
+      w.endRow();
+    }
+    out.end(TBL_ACCTOWN);
+
     // Card
-    w.write(sqlHead("Card", TBL_CARD)+"\n");
+    w = out.begin(TBL_CARD);
     for(int i=0; i<cards.size(); i++) {
       Card cr = cards.get(i);
-      w.write(String.format("  ('%s', '%s', '%s', '%s', '%s', %d, '%s')%s",
-        cr.getNumber(), cr.getDateStr(), cr.getSec(), cr.getStat(), cr.getAID(),
-        cr.getCID()+1, cr.getPIN(),
-        i==cards.size()-1 ? ";\n" : ",\n"));
-    }
 
-    w.close();
+      w.row(Long.parseLong(cr.getAID()));
+      w.str(cr.getNumber());
+      w.date(cr.getDate().toEpochDay());
+      w.str(cr.getSec());
+      w.str(cr.getStat());
+      w.str(cr.getAID());
+      w.num(cr.getCID()+1);
+      w.str(cr.getPIN());
+      w.endRow();
+    }
+    out.end(TBL_CARD);
 
-    // Transactions
+    // Transactions (already written out if they were streamed)
     if (!SKIP_TRANS) {
-      w = new BufferedWriter(new FileWriter(FILE_OUT_TRANS));
-      w.write(sqlHead("Transaction", TBL_TRAN)+"\n");
-      for(int i=0; i<trans.size(); i++) {
-        Transaction t = trans.get(i);
-        w.write(String.format("  ('%s', '%s', '%s', '%s', '%s', %.2f, '%s', '%s', NULL)%s",
-          t.getAID(), t.isPending() ? "true" : "false", t.getType(), t.getDateStr(),
-          t.getDesc(), t.getAmount(), t.getRecRoute(), t.getRecAID(),
-          i==trans.size()-1 ? ";\n" : ",\n"));
+      if (transOut == null) {
+        transOut = out.begin(TBL_TRAN);
+        for(long r=0; r<trans.size(); r++) { writeTrans(r); }
       }
-      w.close();
+      out.end(TBL_TRAN);
     }
+    trans.close();
+    out.close();
   }
-}
\ No newline at end of file
+}
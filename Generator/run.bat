@@ -1,6 +1,6 @@
 @echo off
 mkdir out
-javac -d out Main.java
+javac -d out -cp ".;../App/postgresql-42.2.5.jar" Main.java
 jar cfe Generator.jar Main -C out .
 pause
 rmdir out /s /q
@@ -0,0 +1,31 @@
+/**
+  * Allocator is the strategy a Uniquifier uses to hand out numbers that have
+  * not been handed out before. Every number lies in the range [0, 10^len) for
+  * the digit length the allocator was made for; the Uniquifier takes care of
+  * padding the numbers back into strings.
+  *
+  * Date: 18 October 2026
+  */
+
+package src;
+
+public interface Allocator {
+  /** reserve(n) marks the number n as taken so it is never handed out. */
+
+  public void reserve(long n);
+
+  /** next() returns a number that has not been handed out or reserved. */
+
+  public long next();
+
+  /** next(idx) returns a unique number for the idx-th entity being generated.
+    * Allocators that can address entities directly return the same number for
+    * the same index no matter the order of the calls; others ignore the index
+    * and behave like next(). */
+
+  public long next(long idx);
+
+  /** clear() forgets every number handed out or reserved so far. */
+
+  public void clear();
+}
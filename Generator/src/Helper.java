@@ -4,20 +4,54 @@
   * a random instance that is used for all RNG generation instead of multiple
   * classes having to make their own.
   *
+  * When a seed is set, work that runs in parallel draws from per-entity streams
+  * instead: stream(phase, idx) gives the calling thread a SplittableRandom
+  * derived only from the seed, phase, and entity index, so every entity sees
+  * the same numbers no matter which thread generates it.
+  *
   * Date: 27 October 2018
   * Author: Matthew Morgan
   */
 
 package src;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.util.Random;
+import java.util.SplittableRandom;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
 
 public class Helper {
 
   // rng is used for random number generation
+  // seed is the seed rng was created with, if one was set
+  // stream is the per-entity stream of the calling thread, if it has one
   private static Random rng = new Random();
+  private static long seed = 0;
+  private static final ThreadLocal<SplittableRandom> stream = new ThreadLocal<>();
+
+  // SCALE holds the powers of ten toUnscaled() rounds with directly
+  private static final double[] SCALE = {1, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9};
+
+  /** setSeed(s) reseeds the random instance, making generation reproducible */
+
+  public static void setSeed(long s) { seed = s; rng = new Random(s); }
+
+  /** stream(phase, idx) makes the calling thread draw from the random stream
+    * of the idx-th entity of the named phase until endStream() is called.
+    *
+    * @param phase The name of the generation phase (ie "cust")
+    * @param idx The index of the entity within the phase */
+
+  public static void stream(String phase, long idx) {
+    long base = mix(seed ^ mix(phase.hashCode()));
+    stream.set(new SplittableRandom(mix(base + idx * 0x9E3779B97F4A7C15L)));
+  }
+
+  /** endStream() returns the calling thread to the shared random instance */
+
+  public static void endStream() { stream.remove(); }
 
   /** randomRange(low, high) returns a random integer between the bounds low
     * and high
@@ -27,10 +61,14 @@ public class Helper {
     * @return A random integer between low and high */
 
   public static int randomRange(int low, int high) {
+    SplittableRandom s = stream.get();
+    if (s != null) { return s.nextInt(high-low+1) + low; }
     return rng.nextInt(high-low+1) + low;
   }
 
   public static double randomRange(double low, double high) {
+    SplittableRandom s = stream.get();
+    if (s != null) { return (s.nextDouble() * (high-low)) + low; }
     return (rng.nextDouble() * (high-low)) + low;
   }
 
@@ -41,9 +79,48 @@ public class Helper {
     * @return A string of length 'length' of 0-9 digits */
 
   public static String randomDigits(int length) {
-    String str = "";
-    for(int i=0; i<length; i++) { str += randomRange(0,9); }
-    return str;
+    char[] str = new char[length];
+    for(int i=0; i<length; i++) { str[i] = (char)('0' + randomRange(0,9)); }
+    return new String(str);
+  }
+
+  /** toCents(val) returns the dollar amount as a whole number of cents. It
+    * rounds exactly like formatting the amount with "%.2f" does. */
+
+  public static long toCents(double val) { return toUnscaled(val, 2); }
+
+  /** toUnscaled(val, scale) returns val rounded to 'scale' decimal places, as
+    * a whole number of 10^-scale units, rounding exactly like "%.<scale>f".
+    *
+    * Formatting rounds the shortest decimal that reads back as val (half up),
+    * which can only differ from rounding val itself when val lies within a
+    * few ulps of a tie. Those rare cases (and huge values) are left to
+    * BigDecimal, so almost every call is done with plain arithmetic. */
+
+  public static long toUnscaled(double val, int scale) {
+    if (scale >= 0 && scale < SCALE.length) {
+      double x = Math.abs(val) * SCALE[scale];
+
+      if (x < 1e15) {
+        double fl = Math.floor(x), f = x - fl;
+        if (Math.abs(f - 0.5) > 4 * Math.ulp(x)) {
+          long u = (long)fl + (f > 0.5 ? 1 : 0);
+          return val < 0 ? -u : u;
+        }
+      }
+    }
+
+    return BigDecimal.valueOf(val).setScale(scale, RoundingMode.HALF_UP).unscaledValue().longValue();
+  }
+
+  /** toFixed(val, scale) returns the number written with 'scale' decimal
+    * places, exactly like formatting it with "%.<scale>f" does (including the
+    * sign of negative numbers that round to zero). */
+
+  public static String toFixed(double val, int scale) {
+    BigDecimal d = BigDecimal.valueOf(val).setScale(scale, RoundingMode.HALF_UP);
+    String str = d.toPlainString();
+    return (d.signum() == 0 && (val < 0 || 1/val < 0)) ? "-"+str : str;
   }
 
   /** getDays(a,b) gets the number of days between dates a and b */
@@ -51,4 +128,12 @@ public class Helper {
   public static long getDaysBetween(LocalDate a, LocalDate b) {
     return ChronoUnit.DAYS.between(a, b);
   }
+
+  /** mix(z) is the splitmix64 finalizer, used to spread seeds apart */
+
+  private static long mix(long z) {
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
 }
\ No newline at end of file
@@ -0,0 +1,86 @@
+/**
+  * Parallel runs per-entity generation work, either on the calling thread or
+  * spread over a fork-join pool. When a seed is set, every entity gets its own
+  * random stream from Helper, so results don't depend on the thread count or
+  * the order the entities happen to be generated in.
+  *
+  * Date: 18 October 2026
+  */
+
+package src;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+public class Parallel {
+  // pool is the pool entities are generated on, or null for the caller's thread
+  // seeded toggles the use of per-entity random streams
+  private static ForkJoinPool pool = null;
+  private static boolean seeded = false;
+
+  /** setup(threads, seed) seeds Helper and the uniquifiers, and starts a pool
+    * of the given number of threads if more than one is wanted. Seeded runs use
+    * permutation uniquifiers, since only those hand out numbers by index. */
+
+  public static void setup(int threads, long seed) {
+    seeded = true;
+    Helper.setSeed(seed);
+    Uniquifier.setKey(seed);
+    Uniquifier.setMode(Uniquifier.Mode.PERM);
+
+    if (threads > 1) { pool = new ForkJoinPool(threads); }
+  }
+
+  /** isSeeded() returns true if per-entity random streams are in use */
+
+  public static boolean isSeeded() { return seeded; }
+
+  /** forEach(n, phase, body) runs body for every index in [0, n).
+    *
+    * @param n The number of entities to generate
+    * @param phase The name of the phase, which keeps streams of phases apart
+    * @param body The work to do for a single entity */
+
+  public static void forEach(int n, String phase, IntConsumer body) {
+    forEach(0, n, phase, body);
+  }
+
+  /** forEach(from, to, phase, body) runs body for every index in [from, to).
+    * An index gets the same random stream as it would in a single call over
+    * the whole range, so work may be split into chunks freely. */
+
+  public static void forEach(int from, int to, String phase, IntConsumer body) {
+    if (pool == null) {
+      for(int i=from; i<to; i++) { run(phase, i, body); }
+      return;
+    }
+
+    try {
+      pool.submit(() -> IntStream.range(from, to).parallel().forEach(i -> run(phase, i, body))).get();
+    }
+    catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Generation was interrupted");
+    }
+    catch(ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) { throw (RuntimeException)e.getCause(); }
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  /** shutdown() stops the pool's threads, if a pool was started */
+
+  public static void shutdown() {
+    if (pool != null) { pool.shutdown(); }
+  }
+
+  private static void run(String phase, int i, IntConsumer body) {
+    if (!seeded) { body.accept(i); return; }
+
+    Helper.stream(phase, i);
+    try { body.accept(i); }
+    finally { Helper.endStream(); }
+  }
+}
@@ -0,0 +1,110 @@
+/**
+  * PermAllocator hands out unique numbers without remembering any of them. It
+  * runs a counter through a keyed permutation of [0, 10^len), so distinct
+  * counter values always land on distinct numbers that still look random.
+  *
+  * The permutation is a small Feistel network over the smallest even number
+  * of bits that covers the space; results outside the space are fed back in
+  * (cycle walking) until they land inside it. Reserved numbers are skipped the
+  * same way, so reservations must be made before any numbers are handed out.
+  *
+  * Indexed requests, next(idx), count up from the bottom of the counter range
+  * while plain requests, next(), count down from the top; the two only meet
+  * once the whole space is in use.
+  *
+  * Date: 18 October 2026
+  */
+
+package src;
+
+import java.util.TreeSet;
+
+public class PermAllocator implements Allocator {
+  // MAX_LEN is the longest number length the permutation supports
+  // ROUNDS is the number of Feistel rounds in the permutation
+  public static final int MAX_LEN = 18;
+  private static final int ROUNDS = 6;
+
+  // space is the count of numbers of this allocator's length (10^len)
+  // key seeds the permutation's round function
+  // half and mask describe the halves of the Feistel network
+  // count is the number of plain, unindexed requests made so far
+  // reserved is the (small) set of numbers that must never be handed out
+  private long space, key, mask, count;
+  private int half;
+  private TreeSet<Long> reserved;
+
+  public PermAllocator(int len, long k) {
+    if (len < 1 || len > MAX_LEN)
+      throw new IllegalArgumentException("Permutations support 1-"+MAX_LEN+" digits");
+
+    space = 1;
+    for(int i=0; i<len; i++) { space *= 10; }
+
+    int bits = 64 - Long.numberOfLeadingZeros(space-1);
+    half = (bits+1) / 2;
+    mask = (1L << half) - 1;
+    key = k;
+    reserved = new TreeSet<>();
+  }
+
+  public synchronized void reserve(long n) {
+    if (n >= 0 && n < space) { reserved.add(n); }
+  }
+
+  public long next() {
+    long c;
+    synchronized(this) { c = count++; }
+    return next(space - reserved.size() - 1 - c);
+  }
+
+  public long next(long idx) {
+    if (idx < 0 || idx >= space - reserved.size())
+      throw new IllegalStateException("Index "+idx+" is outside the number space");
+
+    long n = permute(select(idx));
+    while(reserved.contains(n)) { n = permute(n); }
+    return n;
+  }
+
+  public synchronized void clear() { reserved.clear(); count = 0; }
+
+  /** select(idx) returns the idx-th number in the space that isn't reserved,
+    * so that walks through the permutation only ever start from free numbers */
+
+  private long select(long idx) {
+    for(long r : reserved) {
+      if (r <= idx) { idx++; }
+      else { break; }
+    }
+    return idx;
+  }
+
+  /** permute(n) maps n onto the space through the Feistel network, walking
+    * through the cycle until the result falls inside the space. */
+
+  private long permute(long n) {
+    do { n = encrypt(n); } while(n >= space);
+    return n;
+  }
+
+  private long encrypt(long n) {
+    long l = n >>> half, r = n & mask;
+
+    for(int i=0; i<ROUNDS; i++) {
+      long tmp = r;
+      r = l ^ (mix(key + i*0x9E3779B97F4A7C15L + r) & mask);
+      l = tmp;
+    }
+
+    return (l << half) | r;
+  }
+
+  /** mix(z) is the splitmix64 finalizer, used as the round function */
+
+  private static long mix(long z) {
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+}
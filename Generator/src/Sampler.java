@@ -0,0 +1,49 @@
+/**
+  * Sampler draws numbers at random, without replacement, from a fixed set of
+  * candidates. It is a partial Fisher-Yates shuffle: every draw swaps the
+  * chosen candidate out of the undrawn part of the array, so each draw takes
+  * O(1) time no matter how many candidates have already been drawn.
+  *
+  * Date: 18 October 2026
+  */
+
+package src;
+
+public class Sampler {
+  // pool holds the candidates; the undrawn ones are kept in [0, left)
+  // left is the number of candidates that haven't been drawn yet
+  private int[] pool;
+  private int left;
+
+  /** Sampler(n) creates a sampler over the numbers 0 to n-1 */
+
+  public Sampler(int n) {
+    pool = new int[n];
+    for(int i=0; i<n; i++) { pool[i] = i; }
+    left = n;
+  }
+
+  /** Sampler(cand) creates a sampler over the given candidates */
+
+  public Sampler(int[] cand) {
+    pool = cand.clone();
+    left = pool.length;
+  }
+
+  /** remaining() returns the number of candidates not yet drawn */
+
+  public int remaining() { return left; }
+
+  /** next() draws a random candidate that hasn't been drawn before */
+
+  public int next() {
+    if (left == 0)
+      throw new IllegalStateException("There are no candidates left to draw");
+
+    int k = Helper.randomRange(0, left-1), v = pool[k];
+    pool[k] = pool[--left];
+    pool[left] = v;
+
+    return v;
+  }
+}
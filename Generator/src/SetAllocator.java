@@ -0,0 +1,96 @@
+/**
+  * SetAllocator hands out random numbers and remembers every number it has
+  * given, making membership checks O(1). Small spaces (up to 10^8 numbers) are
+  * tracked in a bitmap; larger spaces are tracked in a hash set.
+  *
+  * A random number is drawn for every request, redrawing on a collision. Once
+  * a few draws in a row have collided the space is crowded, so the allocator
+  * walks forward from the last draw to the next free number instead of letting
+  * the redraws degrade toward coupon-collector behavior.
+  *
+  * Date: 18 October 2026
+  */
+
+package src;
+
+import java.util.BitSet;
+import java.util.HashSet;
+
+public class SetAllocator implements Allocator {
+  // MAX_BITMAP is the largest space that gets tracked with a bitmap
+  // MAX_DRAWS is the number of colliding draws before probing for a number
+  private static final long MAX_BITMAP = 100000000L;
+  private static final int MAX_DRAWS = 8;
+
+  // len is the number of digits in every number
+  // space is the count of numbers of that length (10^len)
+  // used counts the numbers taken, so exhaustion can be detected
+  // bits and set track taken numbers; only one of them is ever used
+  private int len;
+  private long space, used;
+  private BitSet bits;
+  private HashSet<Long> set;
+
+  public SetAllocator(int num) {
+    len = num;
+    space = 1;
+    for(int i=0; i<len; i++) { space *= 10; }
+    clear();
+  }
+
+  public synchronized void reserve(long n) {
+    if (!isTaken(n)) { take(n); }
+  }
+
+  public synchronized long next() {
+    if (used >= space)
+      throw new IllegalStateException("All "+len+"-digit numbers are taken");
+
+    long n = draw();
+    for(int i=1; i<MAX_DRAWS && isTaken(n); i++) { n = draw(); }
+
+    // Probe forward (wrapping around) once the redraws keep colliding
+    while(isTaken(n)) { n = probe(n); }
+
+    take(n);
+    return n;
+  }
+
+  public long next(long idx) { return next(); }
+
+  public synchronized void clear() {
+    used = 0;
+    if (space <= MAX_BITMAP) { bits = new BitSet(); set = null; }
+    else { set = new HashSet<>(); bits = null; }
+  }
+
+  /** draw() returns a random number of this allocator's length, drawing one
+    * digit at a time exactly like Helper.randomDigits does. */
+
+  private long draw() {
+    long n = 0;
+    for(int i=0; i<len; i++) { n = n*10 + Helper.randomRange(0,9); }
+    return n;
+  }
+
+  /** probe(n) returns the next number after n that may be free, wrapping to
+    * zero at the end of the space. */
+
+  private long probe(long n) {
+    if (bits != null) {
+      int k = bits.nextClearBit((int)n);
+      return k < space ? k : bits.nextClearBit(0);
+    }
+    return (n+1) % space;
+  }
+
+  private boolean isTaken(long n) {
+    return bits != null ? bits.get((int)n) : set.contains(n);
+  }
+
+  private void take(long n) {
+    if (bits != null) { bits.set((int)n); }
+    else { set.add(n); }
+    used++;
+  }
+}
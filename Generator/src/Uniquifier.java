@@ -1,6 +1,9 @@
 /**
   * Uniquifier is a simple class that allows the generation of unique, arbitrary
-  * string lengths that are numerical/integers.
+  * string lengths that are numerical/integers. The bookkeeping of which numbers
+  * have been used is left to an Allocator, chosen by the uniquifier mode:
+  * + SET  : Random numbers, remembered in a bitmap/hash set (default)
+  * + PERM : A counter run through a keyed permutation; nothing is remembered
   *
   * Date: 27 October 2018
   * Author: Matthew Morgan
@@ -9,34 +12,76 @@
 package src;
 
 import java.util.ArrayList;
+import java.util.Random;
 
 public class Uniquifier {
-  // L is the list of all numbers already generated by this uniquifier
+  // Mode is an enumeration of the allocation strategies available
+  public static enum Mode { SET, PERM };
+
+  // mode is the strategy used by uniquifiers when they first hand out numbers
+  // key is the key permutation allocators derive their own keys from
+  private static Mode mode = Mode.SET;
+  private static long key = new Random().nextLong();
+
+  // A is the allocator tracking numbers generated by this uniquifier
   // len is the length of each number generated by this uniquifier
-  private ArrayList<String> L;
+  private volatile Allocator A;
   private int len;
 
-  public Uniquifier(int num) { len = num; L = new ArrayList<>(); }
+  public Uniquifier(int num) { len = num; A = null; }
+
+  /** setMode(m) sets the allocation strategy of uniquifiers. It only affects
+    * uniquifiers that haven't handed out or reserved a number yet. */
+
+  public static void setMode(Mode m) { mode = m; }
+
+  /** setKey(k) sets the key permutation allocators are derived from, making
+    * the numbers they hand out reproducible. */
+
+  public static void setKey(long k) { key = k; }
 
   /** reserve(str) reserves the numerical string specified in this uniquifier */
 
-  public void reserve(String str) { L.add(str); }
+  public void reserve(String str) { alloc().reserve(Long.parseLong(str)); }
 
   /** setList(newL) replaces the list of numbers this uniquifier has generated
     * with the list specified as the argument. */
 
-  public void setList(ArrayList<String> newL) { L = newL; }
+  public void setList(ArrayList<String> newL) {
+    alloc().clear();
+    for(String str : newL) { reserve(str); }
+  }
 
   /** get() returns a new, unique number of this uniquifier's length according
-    * to the list of numbers generated by this uniquifier. */
+    * to the numbers generated by this uniquifier. */
+
+  public String get() { return pad(alloc().next()); }
+
+  /** get(idx) returns a unique number for the idx-th entity that needs one.
+    * In PERM mode the same index always yields the same number, regardless of
+    * the order (or thread) the requests are made in. */
 
-  public String get() {
-    String tmp;
+  public String get(long idx) { return pad(alloc().next(idx)); }
+
+  /** alloc() returns this uniquifier's allocator, creating it on first use */
+
+  private Allocator alloc() {
+    if (A == null) {
+      synchronized(this) {
+        if (A == null) {
+          if (mode == Mode.PERM) { A = new PermAllocator(len, key * 31 + len); }
+          else { A = new SetAllocator(len); }
+        }
+      }
+    }
+    return A;
+  }
 
-    do { tmp = Helper.randomDigits(len); }
-    while(L.contains(tmp));
+  /** pad(n) returns n as a string, zero-padded to this uniquifier's length */
 
-    L.add(tmp);
-    return tmp;
+  private String pad(long n) {
+    char[] str = new char[len];
+    for(int i=len-1; i>=0; i--) { str[i] = (char)('0' + n % 10); n /= 10; }
+    return new String(str);
   }
-}
\ No newline at end of file
+}
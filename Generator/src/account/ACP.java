@@ -18,7 +18,8 @@ public class ACP {
   public ACP(int c, String a) { cid = c; aid = a; }
 
   /** getAIDCust(L, acc) returns the customer ID associated with an account in
-    * a list of ACP instances.
+    * a list of ACP instances. (This is a linear scan; use an AccountIndex when
+    * many lookups are needed.)
     *
     * @param L The collection (a list) of ACP instances
     * @param acc The account string to get customer ID for
@@ -0,0 +1,89 @@
+/**
+  * AccountIndex is an in-memory index over the offline accounts, addressed by
+  * account ordinal (the account's position in the generated array). It gives
+  * O(1) access to the owning customers, home state, and home branch of an
+  * account, and maps AIDs back to ordinals.
+  *
+  * Every account has a primary owner (the customer it was opened for) and may
+  * have any number of co-owners.
+  *
+  * Date: 18 October 2026
+  */
+
+package src.account;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+public class AccountIndex {
+  // ord maps AIDs to account ordinals
+  // owner and state are the primary owner's CID and home state per ordinal
+  // coOwn holds the co-owner CIDs per ordinal (null if there are none)
+  // branch holds the branches of the country's states, once they exist
+  private HashMap<String,Integer> ord;
+  private int[] owner, state;
+  private int[][] coOwn;
+  private Branch[] branch;
+
+  public AccountIndex(int n) {
+    ord = new HashMap<>(n * 2);
+    owner = new int[n];
+    state = new int[n];
+    coOwn = new int[n][];
+    branch = null;
+  }
+
+  /** add(i, aid, cid, st) indexes the i-th account.
+    *
+    * @param i The ordinal of the account
+    * @param aid The AID of the account
+    * @param cid The CID of the account's primary owner
+    * @param st The home state of the account (the primary owner's state) */
+
+  public void add(int i, String aid, int cid, int st) {
+    ord.put(aid, i);
+    owner[i] = cid;
+    state[i] = st;
+  }
+
+  /** addOwner(i, cid) adds a co-owner to the i-th account */
+
+  public void addOwner(int i, int cid) {
+    int[] c = coOwn[i] == null ? new int[1] : Arrays.copyOf(coOwn[i], coOwn[i].length+1);
+    c[c.length-1] = cid;
+    coOwn[i] = c;
+  }
+
+  /** setBranches(b) sets the branches of the states, indexed by state */
+
+  public void setBranches(Branch[] b) { branch = b; }
+
+  /** ordinal(aid) returns the ordinal of the account, or -1 if none exists */
+
+  public int ordinal(String aid) {
+    Integer i = ord.get(aid);
+    return i == null ? -1 : i;
+  }
+
+  public int size() { return owner.length; }
+  public int owner(int i) { return owner[i]; }
+  public int state(int i) { return state[i]; }
+
+  /** owners(i) returns the CIDs of every owner of the i-th account, with the
+    * primary owner first. */
+
+  public int[] owners(int i) {
+    int n = coOwn[i] == null ? 0 : coOwn[i].length;
+    int[] res = new int[n+1];
+
+    res[0] = owner[i];
+    for(int k=0; k<n; k++) { res[k+1] = coOwn[i][k]; }
+    return res;
+  }
+
+  /** route(i) and branchAID(i) return the routing number and AID of the home
+    * branch of the i-th account. */
+
+  public String route(int i) { return branch[state[i]].route; }
+  public String branchAID(int i) { return branch[state[i]].aid; }
+}
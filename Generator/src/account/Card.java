@@ -28,8 +28,14 @@ public class Card {
   private LocalDate exp;
   private Status stat;
 
-  public Card(String a, int c) {
-    num = uNum.get();
+  /** Card(a,c,id) creates a new, closed card for an account.
+    *
+    * @param a The AID of the account the card is for
+    * @param c The CID of the customer who owns the card
+    * @param id The index of the card, used to pick a unique card number */
+
+  public Card(String a, int c, long id) {
+    num = uNum.get(id);
     aid = a;
     cid = c;
     sec = Helper.randomDigits(3);
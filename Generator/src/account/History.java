@@ -0,0 +1,86 @@
+/**
+  * History is the transactions of one account, as they're simulated. Like
+  * TransactionStore, it keeps columns rather than a Transaction per row, but
+  * in small arrays that grow as needed, since an account's history is short
+  * and many are simulated at once. Descriptions and recipients are kept by
+  * reference, so rows sharing a store or branch share its strings.
+  *
+  * Date: 18 October 2026
+  */
+
+package src.account;
+
+import java.util.Arrays;
+
+public class History {
+  // TYPES are the transaction types, by ordinal
+  private static final Transaction.Type[] TYPES = Transaction.Type.values();
+
+  // aid is the account the history is of
+  // n is the number of rows, and the remaining arrays are the columns
+  private final long aid;
+  private int n;
+  private int[] day;
+  private long[] cents;
+  private byte[] type;
+  private boolean[] pend;
+  private String[] desc, recRoute, recAID;
+
+  public History(long a) {
+    aid = a;
+    n = 0;
+    day = new int[64];
+    cents = new long[64];
+    type = new byte[64];
+    pend = new boolean[64];
+    desc = new String[64];
+    recRoute = new String[64];
+    recAID = new String[64];
+  }
+
+  /** add(d, c, t, ds, rr, ra, p) adds a transaction to the end of the history.
+    *
+    * @param d The date, as an epoch day
+    * @param c The amount, in cents
+    * @param t The type of the transaction
+    * @param ds The description
+    * @param rr The recipient's routing number
+    * @param ra The recipient's AID
+    * @param p True if the transaction is pending */
+
+  public void add(long d, long c, Transaction.Type t, String ds, String rr, String ra, boolean p) {
+    if (n == day.length) { grow(); }
+
+    day[n] = (int)d;
+    cents[n] = c;
+    type[n] = (byte)t.ordinal();
+    pend[n] = p;
+    desc[n] = ds;
+    recRoute[n] = rr;
+    recAID[n] = ra;
+    n++;
+  }
+
+  public long getAID() { return aid; }
+  public int size() { return n; }
+  public int getDay(int row) { return day[row]; }
+  public long getCents(int row) { return cents[row]; }
+  public Transaction.Type getType(int row) { return TYPES[type[row]]; }
+  public boolean isPending(int row) { return pend[row]; }
+  public String getDesc(int row) { return desc[row]; }
+  public String getRecRoute(int row) { return recRoute[row]; }
+  public String getRecAID(int row) { return recAID[row]; }
+
+  /** grow() doubles the room for rows in every column */
+
+  private void grow() {
+    int len = 2 * day.length;
+    day = Arrays.copyOf(day, len);
+    cents = Arrays.copyOf(cents, len);
+    type = Arrays.copyOf(type, len);
+    pend = Arrays.copyOf(pend, len);
+    desc = Arrays.copyOf(desc, len);
+    recRoute = Arrays.copyOf(recRoute, len);
+    recAID = Arrays.copyOf(recAID, len);
+  }
+}
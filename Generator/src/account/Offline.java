@@ -20,7 +20,10 @@ public class Offline {
   public static enum Type { CHK, SAV };
   public static enum Comp { NONE, MONTHLY, QUARTERLY, TRIMESTERLY, SEMESTERLY, ANNUALLY };
 
+  // uAID is the uniquifier for AIDs; 000000000000 is the placeholder AID used
+  // by the application, so it is never handed out
   private static Uniquifier uAID = new Uniquifier(12);
+  static { uAID.reserve("000000000000"); }
 
   // open and close are the open/close dates of the account
   // aid is the account's unique number, > 000000000000
@@ -36,10 +39,10 @@ public class Offline {
 
   public static String newAID() { return uAID.get(); }
 
-  public Offline(Customer c) {
+  public Offline(Customer c, int id) {
     int numType = Type.values().length, numComp = Comp.values().length;
 
-    do { aid = uAID.get(); } while (aid.equals("000000000000"));
+    aid = uAID.get(id);
     bal = Helper.randomRange(25, 1000);
     fee = randFee();
 
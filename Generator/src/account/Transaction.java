@@ -59,6 +59,7 @@ public class Transaction {
   public LocalDate getDate() { return date; }
   public String getDateStr() { return date.toString(); }
   public String getType() { return type.name(); }
+  public Type getTypeEnum() { return type; }
 
   /** setDID(d) sets the dispute that references this transaction */
 
@@ -0,0 +1,188 @@
+/**
+  * TransactionStore is a columnar store for generated transactions. Rather than
+  * keeping a Transaction object per row, every column is kept as primitives:
+  * + AID as a long, and the date as an epoch day
+  * + The amount as a whole number of cents
+  * + The type as a byte, and the pending flags in a bitset
+  * + Description and recipient (routing number, AID) as dictionary ids
+  * + The referencing dispute's DID, where 0 means NULL
+  *
+  * Rows are kept in segments of SEG_ROWS rows, each holding its columns one
+  * after another in a single buffer. Segments live on the heap until the store
+  * holds 'spill' rows; from there on, new segments are mapped from a temporary
+  * file, so the size of the store is bounded by disk rather than by heap. The
+  * file only holds the spilled segments, and is deleted when the JVM exits
+  * (a mapped file can't be deleted sooner on every platform).
+  *
+  * Date: 18 October 2026
+  */
+
+package src.account;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+
+public class TransactionStore {
+  // SEG_ROWS is the number of rows in every segment
+  // The OFF_ constants are the offsets of each column in a segment, and
+  // SEG_SIZE is the number of bytes in a segment
+  private static final int SEG_ROWS = 1 << 16;
+  private static final int
+    OFF_AID = 0,
+    OFF_CENTS = OFF_AID + 8*SEG_ROWS,
+    OFF_DAY = OFF_CENTS + 8*SEG_ROWS,
+    OFF_DESC = OFF_DAY + 4*SEG_ROWS,
+    OFF_REC = OFF_DESC + 4*SEG_ROWS,
+    OFF_DID = OFF_REC + 4*SEG_ROWS,
+    OFF_TYPE = OFF_DID + 4*SEG_ROWS,
+    SEG_SIZE = OFF_TYPE + SEG_ROWS;
+
+  // TYPES are the transaction types, by ordinal
+  private static final Transaction.Type[] TYPES = Transaction.Type.values();
+
+  // seg is the list of segments, in row order
+  // pending flags the rows of pending transactions
+  // size is the number of rows, and spill is the number kept on the heap
+  // heap is the number of segments on the heap, once the store has spilled
+  // dir is the directory the spill file goes in, and file is its channel
+  private ArrayList<ByteBuffer> seg;
+  private BitSet pending;
+  private long size, spill;
+  private int heap;
+  private File dir;
+  private FileChannel file;
+
+  // descs and descId form the description dictionary
+  // recRoute, recAID, and recId form the recipient dictionary, where recId
+  // maps a routing number to the ids of the AIDs seen with it
+  private ArrayList<String> descs, recRoute, recAID;
+  private HashMap<String,Integer> descId;
+  private HashMap<String,HashMap<String,Integer>> recId;
+
+  /** TransactionStore(sp, d) creates an empty store.
+    *
+    * @param sp The number of rows to keep on the heap before spilling
+    * @param d The directory to create the spill file in */
+
+  public TransactionStore(long sp, File d) {
+    seg = new ArrayList<>();
+    pending = new BitSet();
+    size = 0;
+    spill = sp;
+    heap = 0;
+    dir = d;
+    file = null;
+
+    descs = new ArrayList<>(); descId = new HashMap<>();
+    recRoute = new ArrayList<>(); recAID = new ArrayList<>(); recId = new HashMap<>();
+  }
+
+  public long size() { return size; }
+
+  /** add(aid,day,cents,type,desc,rr,ra,pend) adds a transaction to the end of
+    * the store from its column values. */
+
+  public void add(long aid, long day, long cents, Transaction.Type type, String desc,
+    String rr, String ra, boolean pend) throws IOException {
+    if (size % SEG_ROWS == 0) { seg.add(newSegment()); }
+
+    ByteBuffer b = seg.get(seg.size()-1);
+    int r = (int)(size % SEG_ROWS);
+
+    b.putLong(OFF_AID + 8*r, aid);
+    b.putLong(OFF_CENTS + 8*r, cents);
+    b.putInt(OFF_DAY + 4*r, (int)day);
+    b.putInt(OFF_DESC + 4*r, descOf(desc));
+    b.putInt(OFF_REC + 4*r, recOf(rr, ra));
+    b.putInt(OFF_DID + 4*r, 0);
+    b.put(OFF_TYPE + r, (byte)type.ordinal());
+    if (pend) { pending.set(Math.toIntExact(size)); }
+
+    size++;
+  }
+
+  /** setDID(row, did) sets the dispute that references the transaction */
+
+  public void setDID(long row, int did) { buf(row).putInt(OFF_DID + 4*idx(row), did); }
+
+  public long getAID(long row) { return buf(row).getLong(OFF_AID + 8*idx(row)); }
+  public long getCents(long row) { return buf(row).getLong(OFF_CENTS + 8*idx(row)); }
+  public int getDay(long row) { return buf(row).getInt(OFF_DAY + 4*idx(row)); }
+  public LocalDate getDate(long row) { return LocalDate.ofEpochDay(getDay(row)); }
+  public String getDesc(long row) { return descs.get(buf(row).getInt(OFF_DESC + 4*idx(row))); }
+  public String getRecRoute(long row) { return recRoute.get(buf(row).getInt(OFF_REC + 4*idx(row))); }
+  public String getRecAID(long row) { return recAID.get(buf(row).getInt(OFF_REC + 4*idx(row))); }
+  public int getDID(long row) { return buf(row).getInt(OFF_DID + 4*idx(row)); }
+  public boolean isPending(long row) { return pending.get(Math.toIntExact(row)); }
+
+  public Transaction.Type getType(long row) {
+    return TYPES[buf(row).get(OFF_TYPE + idx(row))];
+  }
+
+  /** close() releases the store's segments, and the spill file if the store
+    * spilled. Mapped segments are unmapped once collected, and the file is
+    * deleted when the JVM exits. */
+
+  public void close() throws IOException {
+    seg.clear();
+    if (file != null) { file.close(); file = null; }
+  }
+
+  /** newSegment() returns a buffer for the next segment, mapping it from the
+    * spill file once the store has outgrown the heap threshold. */
+
+  private ByteBuffer newSegment() throws IOException {
+    if (size < spill) { return ByteBuffer.allocate(SEG_SIZE); }
+
+    if (file == null) {
+      File f = File.createTempFile("trans", ".col", dir);
+      f.deleteOnExit();
+      file = new RandomAccessFile(f, "rw").getChannel();
+      heap = seg.size();
+    }
+
+    // The file starts at the first spilled segment, leaving no hole for the
+    // segments on the heap
+    return file.map(FileChannel.MapMode.READ_WRITE, (long)(seg.size() - heap) * SEG_SIZE, SEG_SIZE);
+  }
+
+  private ByteBuffer buf(long row) { return seg.get((int)(row / SEG_ROWS)); }
+  private int idx(long row) { return (int)(row % SEG_ROWS); }
+
+  /** descOf(desc) and recOf(rr, ra) return the dictionary ids of the values,
+    * adding them to their dictionary the first time they are seen. */
+
+  private int descOf(String desc) {
+    Integer id = descId.get(desc);
+    if (id == null) {
+      id = descs.size();
+      descs.add(desc);
+      descId.put(desc, id);
+    }
+    return id;
+  }
+
+  private int recOf(String rr, String ra) {
+    HashMap<String,Integer> ids = recId.get(rr);
+    if (ids == null) {
+      ids = new HashMap<>();
+      recId.put(rr, ids);
+    }
+
+    Integer id = ids.get(ra);
+    if (id == null) {
+      id = recRoute.size();
+      recRoute.add(rr);
+      recAID.add(ra);
+      ids.put(ra, id);
+    }
+    return id;
+  }
+}
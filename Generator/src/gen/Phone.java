@@ -8,14 +8,14 @@
 
 package src.gen;
 
-import java.util.ArrayList;
 import src.Helper;
+import src.Uniquifier;
 
 public class Phone {
-  // codes is a list of already generated phone codes
-  private ArrayList<String> codes;
+  // codes is a uniquifier tracking the already generated phone codes
+  private Uniquifier codes;
 
-  public Phone() { codes = new ArrayList<>(); }
+  public Phone() { codes = new Uniquifier(3); }
 
   /** genCode() generates a unique phone code (according to this phone instance)
     * and returns the code - a 3-digit string. It avoids restricted codes. */
@@ -23,10 +23,9 @@ public class Phone {
   public String genCode() {
     String code;
 
-    do { code = Helper.randomDigits(3); }
-    while(codes.contains(code) || isReserved(code));
+    do { code = codes.get(); }
+    while(isReserved(code));
 
-    codes.add(code);
     return code;
   }
 
@@ -47,7 +46,7 @@ public class Phone {
   /** reserveCode(code) adds the phone code to the list of codes already
     * generated by the phone instance. */
 
-  public void reserveCode(String code) { codes.add(code); }
+  public void reserveCode(String code) { codes.reserve(code); }
 
   /** isReserved(code) returns whether the phone code provided is reserved
     * for some purpose. The following rules apply:
@@ -0,0 +1,155 @@
+/**
+  * BinarySink writes a table in the binary format of PostgreSQL's COPY. Values
+  * are sent the way the database stores them, so loading skips parsing text:
+  * + TEXT   : The UTF-8 bytes of the value (enumerations are sent as text too)
+  * + INT    : A 4-byte integer, and BIGINT an 8-byte one
+  * + FLOAT  : An 8-byte IEEE double
+  * + DATE   : A 4-byte count of days since 2000-01-01
+  * + BOOL   : A single byte
+  *
+  * Values are converted to the type of their column, so ie an AID handed over
+  * as a string is still sent as a bigint. A binary file holds a single table,
+  * so each table gets a sink of its own.
+  *
+  * Date: 18 October 2026
+  */
+
+package src.out;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import src.Helper;
+
+public class BinarySink implements Sink {
+  // SIGNATURE starts every file in the binary COPY format
+  // PG_EPOCH is the epoch day of 2000-01-01, which dates are counted from
+  private static final byte[] SIGNATURE = {'P','G','C','O','P','Y','\n',(byte)0xFF,'\r','\n',0};
+  private static final long PG_EPOCH = 10957;
+
+  // out is the stream the table is written to
+  // t is the table being written, and col the index of the next value
+  private DataOutputStream out;
+  private Table t;
+  private int col;
+
+  public BinarySink(OutputStream o) { out = new DataOutputStream(o); }
+
+  /** begin(t) writes the header: the signature, no flags, and no extension */
+
+  public void begin(Table tbl) throws IOException {
+    t = tbl;
+    out.write(SIGNATURE);
+    out.writeInt(0);
+    out.writeInt(0);
+  }
+
+  public void row() throws IOException {
+    out.writeShort(t.size());
+    col = 0;
+  }
+
+  public void endRow() {}
+
+  public void str(String v) throws IOException {
+    switch(type()) {
+      case INT: case BIGINT: num(Long.parseLong(v)); break;
+      case FLOAT: real(Double.parseDouble(v)); break;
+      case DATE: date(LocalDate.parse(v).toEpochDay()); break;
+      case BOOL: bool(Boolean.parseBoolean(v)); break;
+      default: text(v);
+    }
+  }
+
+  public void chr(char v) throws IOException { str(String.valueOf(v)); }
+
+  public void code(long v, int digits) throws IOException {
+    if (type() == Table.Type.TEXT) { text(SqlSink.pad(v, digits)); }
+    else { num(v); }
+  }
+
+  public void num(long v) throws IOException {
+    switch(type()) {
+      case INT: out.writeInt(4); out.writeInt(Math.toIntExact(v)); col++; break;
+      case BIGINT: out.writeInt(8); out.writeLong(v); col++; break;
+      case FLOAT: real(v); break;
+      default: text(Long.toString(v));
+    }
+  }
+
+  /** money(cents) and dec(v, scale) send the value the database would have
+    * parsed from the SQL output, so both formats load the same doubles. */
+
+  public void money(long cents) throws IOException {
+    if (type() == Table.Type.FLOAT) { real(cents / 100.0); }
+    else { text(SqlSink.dollars(cents)); }
+  }
+
+  public void dec(double v, int scale) throws IOException {
+    if (type() != Table.Type.FLOAT) { text(Helper.toFixed(v, scale)); return; }
+
+    // Dividing the rounded digits by a power of ten gives the double nearest
+    // to the decimal, as parsing it would (keeping the sign of -0.00)
+    long u = Helper.toUnscaled(v, scale);
+    double r = u / Math.pow(10, scale);
+    real(u == 0 && (v < 0 || 1/v < 0) ? -0.0 : r);
+  }
+
+  public void date(long day) throws IOException {
+    if (type() != Table.Type.DATE) { text(LocalDate.ofEpochDay(day).toString()); return; }
+
+    out.writeInt(4);
+    out.writeInt((int)(day - PG_EPOCH));
+    col++;
+  }
+
+  public void bool(boolean v) throws IOException {
+    out.writeInt(1);
+    out.writeByte(v ? 1 : 0);
+    col++;
+  }
+
+  public void nul() throws IOException {
+    out.writeInt(-1);
+    col++;
+  }
+
+  /** end() writes the trailer that ends the table */
+
+  public void end() throws IOException {
+    out.writeShort(-1);
+    t = null;
+  }
+
+  public void close() throws IOException { out.close(); }
+
+  private Table.Type type() { return t.getType(col); }
+
+  /** text(v) sends the string as UTF-8; ASCII strings (nearly all of them)
+    * are sent a byte per character without encoding them into a new array. */
+
+  private void text(String v) throws IOException {
+    boolean ascii = true;
+    for(int i=0; i<v.length() && ascii; i++) { ascii = v.charAt(i) < 0x80; }
+
+    if (ascii) {
+      out.writeInt(v.length());
+      out.writeBytes(v);
+    }
+    else {
+      byte[] b = v.getBytes(StandardCharsets.UTF_8);
+      out.writeInt(b.length);
+      out.write(b);
+    }
+    col++;
+  }
+
+  private void real(double v) throws IOException {
+    out.writeInt(8);
+    out.writeDouble(v);
+    col++;
+  }
+}
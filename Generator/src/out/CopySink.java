@@ -0,0 +1,72 @@
+/**
+  * CopySink writes tables in the text or CSV format of PostgreSQL's COPY, one
+  * line per row, ready to be loaded with 'copy ... from' (or psql's \copy).
+  * + TEXT : Tab-separated, NULLs as \N, backslash escapes in values
+  * + CSV  : Comma-separated, NULLs as nothing, values quoted when needed
+  *
+  * Neither format has a header line, so the columns loaded have to be listed
+  * in the copy statement (see Output's loader script). Rows are built in an
+  * Encoder and written out a few kilobytes at a time.
+  *
+  * Date: 18 October 2026
+  */
+
+package src.out;
+
+import java.io.IOException;
+import java.io.Writer;
+
+public class CopySink implements Sink {
+  // FLUSH is the number of characters encoded before they are written out
+  private static final int FLUSH = 1 << 13;
+
+  // w is the writer rows are written to, and e the encoder rows are built in
+  // csv toggles the CSV format (rather than text)
+  // col is the index of the next value of the row being written
+  private Writer w;
+  private Encoder e;
+  private boolean csv;
+  private int col;
+
+  public CopySink(Writer out, boolean c) {
+    w = out;
+    e = new Encoder(FLUSH + 256);
+    csv = c;
+  }
+
+  public void begin(Table t) {}
+  public void row() { col = 0; }
+
+  public void endRow() throws IOException {
+    e.append('\n');
+    if (e.length() >= FLUSH) { e.writeTo(w); }
+  }
+
+  public void str(String v) {
+    next();
+    if (csv) { e.csv(v); }
+    else { e.escaped(v); }
+  }
+
+  public void chr(char v) { str(String.valueOf(v)); }
+  public void code(long v, int digits) { next(); e.pad(v, digits); }
+  public void num(long v) { next(); e.num(v); }
+  public void money(long cents) { next(); e.cents(cents); }
+  public void dec(double v, int scale) { next(); e.fixed(v, scale); }
+  public void date(long day) { next(); e.date(day); }
+  public void bool(boolean v) { next(); e.append(v ? 't' : 'f'); }
+
+  public void nul() {
+    next();
+    if (!csv) { e.append("\\N"); }
+  }
+
+  public void end() throws IOException { e.writeTo(w); }
+  public void close() throws IOException { w.close(); }
+
+  /** next() starts the next value of the row, after a delimiter if needed */
+
+  private void next() {
+    if (col++ > 0) { e.append(csv ? ',' : '\t'); }
+  }
+}
@@ -0,0 +1,218 @@
+/**
+  * Encoder builds rows of output in a reusable char[], so that writing a value
+  * doesn't create any objects along the way: numbers, fixed-point amounts, and
+  * ISO dates are written digit by digit, and strings are copied (and escaped
+  * or quoted as the format needs) straight into the buffer. Sinks build a row
+  * or more in an encoder and hand the buffer to their writer in one call.
+  *
+  * Values are spelled exactly as String.format and LocalDate.toString spell
+  * them, so switching to an encoder doesn't change a byte of output.
+  *
+  * Date: 18 October 2026
+  */
+
+package src.out;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import src.Helper;
+
+public class Encoder {
+  // POW holds the powers of ten that fit in a long
+  private static final long[] POW = new long[19];
+  static {
+    POW[0] = 1;
+    for(int i=1; i<POW.length; i++) { POW[i] = POW[i-1] * 10; }
+  }
+
+  // buf holds the characters encoded, and len the number of them
+  private char[] buf;
+  private int len;
+
+  public Encoder(int cap) {
+    buf = new char[Math.max(cap, 16)];
+    len = 0;
+  }
+
+  public int length() { return len; }
+
+  /** writeTo(w) writes everything encoded so far, and empties the encoder */
+
+  public void writeTo(Writer w) throws IOException {
+    w.write(buf, 0, len);
+    len = 0;
+  }
+
+  public Encoder append(char c) {
+    ensure(1);
+    buf[len++] = c;
+    return this;
+  }
+
+  public Encoder append(String s) {
+    int n = s.length();
+    ensure(n);
+    s.getChars(0, n, buf, len);
+    len += n;
+    return this;
+  }
+
+  /** quoted(s) writes the string as an SQL literal: in single quotes, with
+    * every quote in it doubled. */
+
+  public Encoder quoted(String s) {
+    int n = s.length();
+    ensure(n + 2);
+    buf[len++] = '\'';
+
+    for(int i=0; i<n; i++) {
+      char c = s.charAt(i);
+      if (c == '\'') { ensure(n - i + 2); buf[len++] = '\''; }
+      buf[len++] = c;
+    }
+
+    buf[len++] = '\'';
+    return this;
+  }
+
+  /** escaped(s) writes the string with backslash escapes for the characters
+    * COPY's text format gives meaning to (backslash, tab, and line breaks). */
+
+  public Encoder escaped(String s) {
+    int n = s.length();
+    ensure(n);
+
+    for(int i=0; i<n; i++) {
+      char c = s.charAt(i);
+      char e = c == '\\' ? '\\' : c == '\t' ? 't' : c == '\n' ? 'n' : c == '\r' ? 'r' : 0;
+
+      if (e != 0) {
+        ensure(n - i + 1);
+        buf[len++] = '\\';
+        c = e;
+      }
+      buf[len++] = c;
+    }
+    return this;
+  }
+
+  /** csv(s) writes the string as a CSV field, quoting it if it is empty (which
+    * would read as a NULL) or holds a delimiter, quote, or line break. */
+
+  public Encoder csv(String s) {
+    int n = s.length();
+    boolean q = n == 0;
+
+    for(int i=0; i<n && !q; i++) {
+      char c = s.charAt(i);
+      q = c == ',' || c == '"' || c == '\n' || c == '\r';
+    }
+    if (!q) { return append(s); }
+
+    ensure(n + 2);
+    buf[len++] = '"';
+    for(int i=0; i<n; i++) {
+      char c = s.charAt(i);
+      if (c == '"') { ensure(n - i + 2); buf[len++] = '"'; }
+      buf[len++] = c;
+    }
+    buf[len++] = '"';
+    return this;
+  }
+
+  /** num(v) writes the integer in decimal */
+
+  public Encoder num(long v) {
+    if (v == Long.MIN_VALUE) { return append(Long.toString(v)); }
+    if (v < 0) { append('-'); v = -v; }
+    return digits(v, 1);
+  }
+
+  /** pad(v, n) writes the (non-negative) integer zero-padded to n digits */
+
+  public Encoder pad(long v, int n) { return digits(v, n); }
+
+  /** cents(c) writes the whole number of cents as dollars, with two decimal
+    * places (as "%d.%02d" would). */
+
+  public Encoder cents(long c) {
+    if (c < 0) { append('-'); c = -c; }
+    digits(c / 100, 1);
+    append('.');
+    return digits(c % 100, 2);
+  }
+
+  /** fixed(v, scale) writes the number with 'scale' decimal places, exactly
+    * like "%.<scale>f" (and Helper.toFixed) would. */
+
+  public Encoder fixed(double v, int scale) {
+    // Amounts too large for a long once scaled are left to BigDecimal
+    if (!(Math.abs(v) * POW[scale] < 1e18)) { return append(Helper.toFixed(v, scale)); }
+
+    long u = Helper.toUnscaled(v, scale);
+    if (u < 0 || (u == 0 && (v < 0 || 1/v < 0))) { append('-'); }
+
+    u = Math.abs(u);
+    digits(u / POW[scale], 1);
+    if (scale > 0) {
+      append('.');
+      digits(u % POW[scale], scale);
+    }
+    return this;
+  }
+
+  /** date(day) writes the epoch day as an ISO date (yyyy-mm-dd), converting
+    * it to a civil date by hand rather than through LocalDate. */
+
+  public Encoder date(long day) {
+    long z = day + 719468;
+    long era = (z >= 0 ? z : z - 146096) / 146097;
+    long doe = z - era * 146097;
+    long yoe = (doe - doe/1460 + doe/36524 - doe/146096) / 365;
+    long doy = doe - (365*yoe + yoe/4 - yoe/100);
+    long mp = (5*doy + 2) / 153;
+    long d = doy - (153*mp + 2)/5 + 1;
+    long m = mp < 10 ? mp + 3 : mp - 9;
+    long y = yoe + era * 400 + (m <= 2 ? 1 : 0);
+
+    // LocalDate spells years outside of four digits its own way
+    if (y < 0 || y > 9999) { return append(LocalDate.ofEpochDay(day).toString()); }
+
+    digits(y, 4).append('-');
+    digits(m, 2).append('-');
+    return digits(d, 2);
+  }
+
+  /** alignRight(from, width) right-aligns everything written since position
+    * 'from' to the width given, by shifting it right past leading spaces. */
+
+  public void alignRight(int from, int width) {
+    int n = width - (len - from);
+    if (n <= 0) { return; }
+
+    ensure(n);
+    System.arraycopy(buf, from, buf, from + n, len - from);
+    Arrays.fill(buf, from, from + n, ' ');
+    len += n;
+  }
+
+  /** digits(v, n) writes the non-negative v with at least n digits */
+
+  private Encoder digits(long v, int n) {
+    int k = 1;
+    while(k < 19 && v >= POW[k]) { k++; }
+    k = Math.max(k, n);
+
+    ensure(k);
+    for(int i=len+k-1; i>=len; i--) { buf[i] = (char)('0' + v % 10); v /= 10; }
+    len += k;
+    return this;
+  }
+
+  private void ensure(int n) {
+    if (len + n > buf.length) { buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + n)); }
+  }
+}
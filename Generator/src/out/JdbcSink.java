@@ -0,0 +1,257 @@
+/**
+  * JdbcSink loads a table straight into a database as its rows are written.
+  * Rows are gathered into batches and handed to a loader thread with its own
+  * connection, which streams them into the table with COPY (through the
+  * PostgreSQL driver's CopyManager), or with batched inserts when COPY is
+  * turned off or the driver doesn't offer it. The loader commits every
+  * 'commit' rows, and once more when the table ends.
+  *
+  * A table's loader doesn't start until the loaders of the tables it refers
+  * to (its parents) have committed, so foreign keys always hold; meanwhile
+  * batches wait in a bounded queue. Since tables are written in an order safe
+  * for foreign keys, loaders of tables that don't depend on each other run at
+  * once while the generator goes on writing.
+  *
+  * Date: 18 October 2026
+  */
+
+package src.out;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.copy.PGCopyOutputStream;
+
+import src.Helper;
+
+public class JdbcSink implements Sink {
+  // QUEUE_SIZE is the number of batches that may wait for the loader
+  // END is the batch that tells the loader the table has ended
+  private static final int QUEUE_SIZE = 16;
+  private static final String[][] END = new String[0][];
+
+  // target is the database loaded into, and t the table loaded
+  // parents holds the loaders of the tables this table refers to
+  private JdbcTarget target;
+  private Table t;
+  private List<JdbcSink> parents;
+
+  // rows is the batch being gathered, and n the number of rows in it
+  // row is the row being written, and col the index of its next value
+  private String[][] rows;
+  private int n;
+  private String[] row;
+  private int col;
+
+  // queue holds the batches waiting for the loader
+  // loader is the thread loading the table
+  // done is released once the loader has finished, and error is set if the
+  //   table failed to load
+  // loaded is the number of rows committed so far
+  private ArrayBlockingQueue<String[][]> queue;
+  private Thread loader;
+  private CountDownLatch done;
+  private volatile Exception error;
+  private volatile long loaded;
+
+  public JdbcSink(JdbcTarget tg, List<JdbcSink> par) {
+    target = tg;
+    parents = par;
+    queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    done = new CountDownLatch(1);
+    error = null;
+    loaded = 0;
+  }
+
+  /** begin(t) starts the loader of the table */
+
+  public void begin(Table tbl) {
+    t = tbl;
+    rows = new String[target.getBatch()][];
+    n = 0;
+
+    loader = new Thread(this::load, "load-"+t.getName());
+    loader.setDaemon(true);
+    loader.start();
+  }
+
+  public void row() {
+    row = new String[t.size()];
+    col = 0;
+  }
+
+  public void endRow() throws IOException {
+    rows[n++] = row;
+    if (n == rows.length) { flush(); }
+  }
+
+  public void str(String v) { row[col++] = v; }
+  public void chr(char v) { row[col++] = String.valueOf(v); }
+  public void code(long v, int digits) { row[col++] = SqlSink.pad(v, digits); }
+  public void num(long v) { row[col++] = Long.toString(v); }
+  public void money(long cents) { row[col++] = SqlSink.dollars(cents); }
+  public void dec(double v, int scale) { row[col++] = Helper.toFixed(v, scale); }
+  public void date(long day) { row[col++] = LocalDate.ofEpochDay(day).toString(); }
+  public void bool(boolean v) { row[col++] = v ? "t" : "f"; }
+  public void nul() { row[col++] = null; }
+
+  /** end() hands the last batch to the loader. The loader keeps on running;
+    * close() waits for it. */
+
+  public void end() throws IOException {
+    flush();
+    put(END);
+  }
+
+  /** close() waits for the table to be loaded, throwing if it failed */
+
+  public void close() throws IOException {
+    await();
+    if (error != null)
+      throw new IOException("Loading "+t.getName()+" failed: "+error.getMessage(), error);
+  }
+
+  public long getLoaded() { return loaded; }
+
+  private void flush() throws IOException {
+    if (n == 0) { return; }
+
+    String[][] b = new String[n][];
+    System.arraycopy(rows, 0, b, 0, n);
+    n = 0;
+    put(b);
+  }
+
+  private void put(String[][] b) throws IOException {
+    try { queue.put(b); }
+    catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while loading "+t.getName());
+    }
+  }
+
+  private void await() {
+    try { done.await(); }
+    catch(InterruptedException e) { Thread.currentThread().interrupt(); }
+  }
+
+  /** load() is the body of the loader thread. If loading fails, the rest of
+    * the batches are still taken off the queue, so the generator never waits
+    * on a loader that has stopped. */
+
+  private void load() {
+    try {
+      for(JdbcSink p : parents) {
+        p.await();
+        if (p.error != null) { throw new SQLException("Table "+p.t.getName()+" failed to load"); }
+      }
+
+      try (Connection con = target.connect()) {
+        CopyManager cm = null;
+        if (target.useCopy() && con.isWrapperFor(PGConnection.class))
+          cm = con.unwrap(PGConnection.class).getCopyAPI();
+
+        if (cm != null) { copy(con, cm); }
+        else { insert(con); }
+      }
+    }
+    catch(Exception e) {
+      error = e;
+      try { while(queue.take() != END) {} }
+      catch(InterruptedException ie) { Thread.currentThread().interrupt(); }
+    }
+    finally { done.countDown(); }
+  }
+
+  /** copy(con, cm) loads the batches with COPY in the text format */
+
+  private void copy(Connection con, CopyManager cm) throws Exception {
+    String sql = "COPY \""+t.getName()+"\""+t.colList()+" FROM STDIN";
+    Encoder e = new Encoder(1 << 16);
+    CopyIn in = null;
+    Writer w = null;
+    long since = 0;
+
+    try {
+      for(String[][] batch = queue.take(); batch != END; batch = queue.take()) {
+        for(String[] r : batch) {
+          for(int i=0; i<r.length; i++) {
+            if (i > 0) { e.append('\t'); }
+            if (r[i] == null) { e.append("\\N"); }
+            else { e.escaped(r[i]); }
+          }
+          e.append('\n');
+        }
+
+        if (in == null) {
+          in = cm.copyIn(sql);
+          w = new OutputStreamWriter(new PGCopyOutputStream(in), StandardCharsets.UTF_8);
+        }
+        e.writeTo(w);
+
+        since += batch.length;
+        if (since >= target.getCommit()) {
+          w.flush();
+          in.endCopy();
+          in = null;
+          con.commit();
+          loaded += since;
+          since = 0;
+        }
+      }
+
+      if (in != null) { w.flush(); in.endCopy(); in = null; }
+      con.commit();
+      loaded += since;
+    }
+    finally {
+      if (in != null && in.isActive()) { in.cancelCopy(); }
+    }
+  }
+
+  /** insert(con) loads the batches with batched, parameterized inserts. The
+    * values are all sent as untyped strings (see JdbcTarget). */
+
+  private void insert(Connection con) throws Exception {
+    String sql = "INSERT INTO \""+t.getName()+"\""+t.colList()+" VALUES (";
+    for(int i=0; i<t.size(); i++) { sql += (i == 0 ? "?" : ", ?"); }
+
+    try (PreparedStatement ps = con.prepareStatement(sql+")")) {
+      long since = 0;
+
+      for(String[][] batch = queue.take(); batch != END; batch = queue.take()) {
+        for(String[] r : batch) {
+          for(int i=0; i<r.length; i++) {
+            if (r[i] == null) { ps.setNull(i+1, Types.OTHER); }
+            else { ps.setString(i+1, r[i]); }
+          }
+          ps.addBatch();
+        }
+        ps.executeBatch();
+
+        since += batch.length;
+        if (since >= target.getCommit()) {
+          con.commit();
+          loaded += since;
+          since = 0;
+        }
+      }
+
+      con.commit();
+      loaded += since;
+    }
+  }
+}
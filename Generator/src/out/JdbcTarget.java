@@ -0,0 +1,68 @@
+/**
+  * JdbcTarget holds where (and how) the generator loads tables straight into a
+  * database: the JDBC URL and credentials, the number of rows sent per batch,
+  * the number of rows loaded between commits, and whether COPY may be used.
+  * Every call to connect() opens a connection of its own, so that tables (and
+  * shards of tables) can be loaded by separate sessions at once.
+  *
+  * Date: 18 October 2026
+  */
+
+package src.out;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Properties;
+
+public class JdbcTarget {
+  // url is the JDBC URL of the database, and props the connection properties
+  // batch is the number of rows sent to the database at a time
+  // commit is the number of rows loaded between commits
+  // copy toggles loading with COPY (rather than batched inserts)
+  private String url;
+  private Properties props;
+  private int batch, commit;
+  private boolean copy;
+
+  /** JdbcTarget(db, u, p) creates a target for the database given, which is
+    * either a full JDBC URL or the name of a database on the local server.
+    *
+    * @param db The database to load into
+    * @param u The username user credential
+    * @param p The password user credential */
+
+  public JdbcTarget(String db, String u, String p) {
+    url = db.startsWith("jdbc:") ? db : "jdbc:postgresql://localhost:5432/"+db;
+
+    // Strings are sent untyped so the server casts them to the type of their
+    // column (dates, enumerations, ...), and batches of inserts are sent as
+    // multi-row statements
+    props = new Properties();
+    props.setProperty("user", u);
+    props.setProperty("password", p);
+    props.setProperty("ApplicationName", "3700 Generator");
+    props.setProperty("stringtype", "unspecified");
+    props.setProperty("reWriteBatchedInserts", "true");
+
+    batch = 1000;
+    commit = 100000;
+    copy = true;
+  }
+
+  public void setBatch(int b) { batch = b; }
+  public void setCommit(int c) { commit = c; }
+  public void setCopy(boolean c) { copy = c; }
+
+  public int getBatch() { return batch; }
+  public int getCommit() { return commit; }
+  public boolean useCopy() { return copy; }
+
+  /** connect() opens a new connection to the database, in a transaction */
+
+  public Connection connect() throws SQLException {
+    Connection con = DriverManager.getConnection(url, props);
+    con.setAutoCommit(false);
+    return con;
+  }
+}
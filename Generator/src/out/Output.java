@@ -0,0 +1,243 @@
+/**
+  * Output hands out the sinks tables are written to, according to the output
+  * format chosen:
+  * + SQL    : 'insert into' statements, every table in the file of its group
+  *            (./data/query.sql unless the table was put in another group)
+  * + TEXT   : COPY text files, one per table, under ./data/copy
+  * + CSV    : COPY CSV files, one per table, under ./data/copy
+  * + BINARY : COPY binary files, one per table, under ./data/copy
+  * + DB     : Straight into a database over JDBC (see JdbcSink), with every
+  *            table (and shard) loaded by a session of its own
+  *
+  * The COPY formats come with a psql script, load.sql, that loads the files
+  * stage by stage (see Table), so that foreign keys are always satisfied.
+  *
+  * With more than one shard, every table that isn't ordered is spread over
+  * that many files (ie copy/Transaction.3.csv, or sql/Transaction.3.sql for
+  * the SQL format), and a manifest, ./data/manifest.txt, lists every file with
+  * its load stage and the psql command that loads it. The files of a stage can
+  * be loaded by separate sessions at once, once the stages before it are done.
+  *
+  * Date: 18 October 2026
+  */
+
+package src.out;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+public class Output {
+  // Format is an enumeration of the output formats available
+  public static enum Format { SQL, TEXT, CSV, BINARY, DB };
+
+  // BUF_SIZE is the buffer size of every file written
+  // DEF_GROUP is the SQL file tables are written to unless grouped otherwise
+  // MANIFEST is the file (under the output directory) the manifest goes in
+  private static final int BUF_SIZE = 1 << 16;
+  private static final String DEF_GROUP = "query", MANIFEST = "manifest.txt";
+
+  // fmt is the output format, and dir the directory output goes in
+  // shards is the number of files every table is spread over
+  // group maps tables to the SQL file they are written to
+  // files holds the open SQL sinks, by file
+  // open holds the sink of every table being written
+  // done lists the tables finished, in the order they were finished
+  // paths holds the files of every table, relative to the output directory
+  // target is the database loaded into by the DB format
+  // loaders holds the loaders of every table begun in the DB format
+  private Format fmt;
+  private File dir;
+  private int shards;
+  private HashMap<Table,String> group;
+  private HashMap<String,Sink> files;
+  private HashMap<Table,Sink> open;
+  private ArrayList<Table> done;
+  private HashMap<Table,ArrayList<String>> paths;
+  private JdbcTarget target;
+  private HashMap<Table,ArrayList<JdbcSink>> loaders;
+
+  public Output(Format f, File d) {
+    fmt = f;
+    dir = d;
+    shards = 1;
+    paths = new HashMap<>();
+    target = null;
+    loaders = new HashMap<>();
+    group = new HashMap<>();
+    files = new HashMap<>();
+    open = new HashMap<>();
+    done = new ArrayList<>();
+  }
+
+  /** parse(str) returns the format named (ie "csv"), ignoring case */
+
+  public static Format parse(String str) { return Format.valueOf(str.toUpperCase()); }
+
+  public Format getFormat() { return fmt; }
+
+  /** setShards(n) sets the number of files every table is spread over */
+
+  public void setShards(int n) {
+    if (n < 1) { throw new IllegalArgumentException("There must be at least one shard"); }
+    shards = n;
+  }
+
+  /** setTarget(tg) sets the database the DB format loads into */
+
+  public void setTarget(JdbcTarget tg) { target = tg; }
+
+  /** group(t, name) makes the SQL format write the table to ./data/name.sql */
+
+  public void group(Table t, String name) { group.put(t, name); }
+
+  /** begin(t) returns the sink the table is written to, with the table begun */
+
+  public Sink begin(Table t) throws IOException {
+    Sink s;
+    paths.put(t, new ArrayList<>());
+
+    if (fmt == Format.DB && target == null)
+      throw new IllegalStateException("There is no database to load "+t.getName()+" into");
+
+    if (fmt == Format.SQL && shards == 1) { s = sqlSink(group.getOrDefault(t, DEF_GROUP)); }
+    else if (shards == 1 || t.isOrdered()) { s = fileSink(t, -1); }
+    else {
+      Sink[] part = new Sink[shards];
+      for(int i=0; i<shards; i++) { part[i] = fileSink(t, i); }
+      s = new ShardedSink(part);
+    }
+
+    s.begin(t);
+    open.put(t, s);
+    return s;
+  }
+
+  /** end(t) finishes the table, closing its file unless others share it */
+
+  public void end(Table t) throws IOException {
+    Sink s = open.remove(t);
+    if (s == null) { return; }
+
+    s.end();
+    if (fmt != Format.DB && !files.containsValue(s)) { s.close(); }
+    done.add(t);
+  }
+
+  /** close() closes every file still open, and writes the loader script of
+    * the COPY formats and the manifest of sharded output. */
+
+  public void close() throws IOException {
+    for(Table t : new ArrayList<>(open.keySet())) { end(t); }
+    for(Sink s : files.values()) { s.close(); }
+    files.clear();
+
+    // Wait for every loader, even after one has failed
+    IOException err = null;
+    for(Table t : done) {
+      for(JdbcSink s : loaders.getOrDefault(t, new ArrayList<>())) {
+        try { s.close(); }
+        catch(IOException e) { if (err == null) { err = e; } }
+      }
+    }
+    if (err != null) { throw err; }
+    if (fmt == Format.DB) { return; }
+
+    // Stages are loaded in order; within a stage, tables keep their order
+    done.sort((a, b) -> Integer.compare(a.getStage(), b.getStage()));
+    if (fmt != Format.SQL) { writeLoader(); }
+    if (shards > 1) { writeManifest(); }
+  }
+
+  private Sink sqlSink(String name) throws IOException {
+    Sink s = files.get(name);
+    if (s == null) {
+      s = new SqlSink(new BufferedWriter(new FileWriter(new File(dir, name+".sql")), BUF_SIZE));
+      files.put(name, s);
+    }
+    return s;
+  }
+
+  /** fileSink(t, i) returns a sink writing to a file of the table's own: the
+    * i-th shard of it, or the whole table if i is negative. In the DB format,
+    * it returns a loader of the table instead. */
+
+  private Sink fileSink(Table t, int i) throws IOException {
+    if (fmt == Format.DB) { return jdbcSink(t); }
+
+    String ext = fmt == Format.SQL ? ".sql" : fmt == Format.BINARY ? ".bin" : fmt == Format.CSV ? ".csv" : ".tsv";
+    String path = (fmt == Format.SQL ? "sql/" : "copy/") + t.getName() + (i < 0 ? "" : "."+i) + ext;
+    File f = new File(dir, path);
+
+    f.getParentFile().mkdirs();
+    paths.get(t).add(path);
+
+    if (fmt == Format.BINARY)
+      return new BinarySink(new BufferedOutputStream(new FileOutputStream(f), BUF_SIZE));
+    if (fmt == Format.SQL)
+      return new SqlSink(new BufferedWriter(new FileWriter(f), BUF_SIZE));
+
+    return new CopySink(new BufferedWriter(new OutputStreamWriter(
+      new FileOutputStream(f), StandardCharsets.UTF_8), BUF_SIZE), fmt == Format.CSV);
+  }
+
+  /** jdbcSink(t) returns a new loader of the table, which waits for the
+    * loaders of the tables it refers to. */
+
+  private Sink jdbcSink(Table t) {
+    ArrayList<JdbcSink> par = new ArrayList<>();
+    for(Table r : t.getRefs()) { par.addAll(loaders.getOrDefault(r, new ArrayList<>())); }
+
+    JdbcSink s = new JdbcSink(target, par);
+    loaders.computeIfAbsent(t, k -> new ArrayList<>()).add(s);
+    return s;
+  }
+
+  /** command(t, path) returns the psql command that loads the file given */
+
+  private String command(Table t, String path) {
+    if (fmt == Format.SQL) { return "\\i "+path; }
+
+    String opt = fmt == Format.BINARY ? "(FORMAT binary)" :
+      "(FORMAT "+fmt.name().toLowerCase()+", ENCODING 'UTF8')";
+    return "\\copy \""+t.getName()+"\""+t.colList()+" FROM '"+path+"' WITH "+opt;
+  }
+
+  /** writeLoader() writes load.sql, which loads every table written with
+    * psql's \copy in a single transaction. It is run from ./data/copy. */
+
+  private void writeLoader() throws IOException {
+    BufferedWriter w = new BufferedWriter(new FileWriter(new File(new File(dir, "copy"), "load.sql")));
+    w.write("-- Loads the generated tables; run from this directory after create.sql:\n");
+    w.write("--   psql -v ON_ERROR_STOP=1 -d <database> -f load.sql\n");
+    w.write("BEGIN;\n");
+    for(Table t : done) {
+      for(String path : paths.get(t)) { w.write(command(t, new File(path).getName())+"\n"); }
+    }
+    w.write("COMMIT;\n");
+    w.close();
+  }
+
+  /** writeManifest() writes the manifest: a line per file, holding the load
+    * stage, table, file, and psql command (run from ./data) of the file, with
+    * the fields separated by tabs. */
+
+  private void writeManifest() throws IOException {
+    BufferedWriter w = new BufferedWriter(new FileWriter(new File(dir, MANIFEST)));
+    w.write("# stage\ttable\tfile\tcommand\n");
+    w.write("# Files of a stage may be loaded at once, after every earlier stage\n");
+    for(Table t : done) {
+      for(String path : paths.get(t)) {
+        w.write(t.getStage()+"\t"+t.getName()+"\t"+path+"\t"+command(t, path)+"\n");
+      }
+    }
+    w.close();
+  }
+}
@@ -0,0 +1,68 @@
+/**
+  * ShardedSink spreads the rows of a table over a number of sinks (shards),
+  * so that the shards can be loaded by as many sessions at once. Rows started
+  * with a key go to the shard the key hashes to, so ie every row of an account
+  * lands in the same shard of every table; rows without a key are dealt out
+  * in turn.
+  *
+  * Date: 18 October 2026
+  */
+
+package src.out;
+
+import java.io.IOException;
+
+public class ShardedSink implements Sink {
+  // part holds the shards, and cur is the one the row being written goes to
+  // rows is the number of rows started without a key
+  private Sink[] part;
+  private Sink cur;
+  private long rows;
+
+  public ShardedSink(Sink[] p) {
+    part = p;
+    cur = null;
+    rows = 0;
+  }
+
+  /** shard(key, n) returns the shard, out of n, that rows of the key go to */
+
+  public static int shard(long key, int n) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int)Math.floorMod(h ^ (h >>> 32), (long)n);
+  }
+
+  public void begin(Table t) throws IOException {
+    for(Sink s : part) { s.begin(t); }
+  }
+
+  public void row() throws IOException {
+    cur = part[(int)(rows++ % part.length)];
+    cur.row();
+  }
+
+  public void row(long key) throws IOException {
+    cur = part[shard(key, part.length)];
+    cur.row();
+  }
+
+  public void endRow() throws IOException { cur.endRow(); }
+
+  public void str(String v) throws IOException { cur.str(v); }
+  public void chr(char v) throws IOException { cur.chr(v); }
+  public void code(long v, int digits) throws IOException { cur.code(v, digits); }
+  public void num(long v) throws IOException { cur.num(v); }
+  public void money(long cents) throws IOException { cur.money(cents); }
+  public void dec(double v, int scale) throws IOException { cur.dec(v, scale); }
+  public void date(long day) throws IOException { cur.date(day); }
+  public void bool(boolean v) throws IOException { cur.bool(v); }
+  public void nul() throws IOException { cur.nul(); }
+
+  public void end() throws IOException {
+    for(Sink s : part) { s.end(); }
+  }
+
+  public void close() throws IOException {
+    for(Sink s : part) { s.close(); }
+  }
+}
@@ -0,0 +1,61 @@
+/**
+  * Sink is the interface every output format of the generator implements.
+  * Tables are written one at a time: begin(table), then every row as a call
+  * to row(), a call per column value (in the table's column order), and
+  * endRow(), and finally end(). A sink may write any number of tables before
+  * it is closed.
+  *
+  * Values are handed over typed, and each sink decides how to spell them:
+  * + str  : Text (and enumerations), escaped as the format requires
+  * + chr  : Text of a single character
+  * + code : A number written zero-padded to a number of digits (ie AIDs)
+  * + num  : An integer
+  * + money: A whole number of cents, written with two decimal places
+  * + dec  : A real number, rounded (half up) to a number of decimal places
+  * + date : A date, given as an epoch day
+  * + bool : A boolean
+  * + nul  : A NULL
+  *
+  * Date: 18 October 2026
+  */
+
+package src.out;
+
+import java.io.IOException;
+
+public interface Sink {
+  /** begin(t) starts writing rows of the table given. */
+
+  public void begin(Table t) throws IOException;
+
+  /** row() starts a new row, and endRow() finishes it. */
+
+  public void row() throws IOException;
+  public void endRow() throws IOException;
+
+  /** row(key) starts a new row that belongs with every other row of the same
+    * key (ie the rows of an account). Sharded sinks route rows on their key;
+    * other sinks ignore it. */
+
+  public default void row(long key) throws IOException { row(); }
+
+  /** The value calls write the next column of the row (see above). */
+
+  public void str(String v) throws IOException;
+  public void chr(char v) throws IOException;
+  public void code(long v, int digits) throws IOException;
+  public void num(long v) throws IOException;
+  public void money(long cents) throws IOException;
+  public void dec(double v, int scale) throws IOException;
+  public void date(long day) throws IOException;
+  public void bool(boolean v) throws IOException;
+  public void nul() throws IOException;
+
+  /** end() finishes the table being written. */
+
+  public void end() throws IOException;
+
+  /** close() flushes and closes whatever the sink writes to. */
+
+  public void close() throws IOException;
+}
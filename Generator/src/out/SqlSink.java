@@ -0,0 +1,124 @@
+/**
+  * SqlSink writes tables as 'insert into' statements, one statement per table,
+  * laid out as the table describes (tuples per line, value widths). This is the
+  * format the generator has always written, and the one the App's reset
+  * command loads.
+  *
+  * Tuples are built in an Encoder and written out a few kilobytes at a time.
+  *
+  * Date: 18 October 2026
+  */
+
+package src.out;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+public class SqlSink implements Sink {
+  // FLUSH is the number of characters encoded before they are written out
+  private static final int FLUSH = 1 << 13;
+
+  // w is the writer statements are written to
+  // e is the encoder tuples are built in
+  // head is the start of the statement of the table being written
+  // t is the table being written, or null between tables
+  // rows is the number of tuples written for the table so far
+  // col is the index of the next value of the tuple being written
+  private Writer w;
+  private Encoder e;
+  private String head;
+  private Table t;
+  private long rows;
+  private int col;
+
+  public SqlSink(Writer out) {
+    w = out;
+    e = new Encoder(FLUSH + 256);
+    t = null;
+  }
+
+  public void begin(Table tbl) {
+    if (t != null)
+      throw new IllegalStateException("Table "+t.getName()+" is still being written");
+
+    t = tbl;
+    head = "INSERT INTO \""+t.getName()+"\""+t.colList()+" VALUES \n";
+    rows = 0;
+  }
+
+  /** row() starts a tuple, starting the statement on the first one. Tuples
+    * are separated by commas, and wrap every 'perLine' tuples. */
+
+  public void row() {
+    if (rows == 0) { e.append(head); }
+    else { e.append(rows % t.getPerLine() == 0 ? ",\n" : ", "); }
+
+    e.append("  (");
+    rows++;
+    col = 0;
+  }
+
+  public void endRow() throws IOException {
+    e.append(')');
+    if (e.length() >= FLUSH) { e.writeTo(w); }
+  }
+
+  public void str(String v) { int p = open(); e.quoted(v); close(p); }
+  public void code(long v, int digits) { int p = open(); e.append('\'').pad(v, digits).append('\''); close(p); }
+  public void num(long v) { int p = open(); e.num(v); close(p); }
+  public void money(long cents) { int p = open(); e.cents(cents); close(p); }
+  public void dec(double v, int scale) { int p = open(); e.fixed(v, scale); close(p); }
+  public void date(long day) { int p = open(); e.append('\'').date(day).append('\''); close(p); }
+  public void bool(boolean v) { int p = open(); e.append(v ? "'true'" : "'false'"); close(p); }
+  public void nul() { int p = open(); e.append(t.getNull(col)); close(p); }
+
+  public void chr(char v) {
+    int p = open();
+    e.append('\'').append(v);
+    if (v == '\'') { e.append(v); }
+    e.append('\'');
+    close(p);
+  }
+
+  /** end() ends the statement, if any tuples were written */
+
+  public void end() throws IOException {
+    if (rows > 0) { e.append(";\n"); }
+    e.writeTo(w);
+    t = null;
+  }
+
+  public void close() throws IOException { w.close(); }
+
+  /** open() starts the next value of the tuple, returning where it starts,
+    * and close(p) aligns the value to the width of its column. */
+
+  private int open() {
+    if (col > 0) { e.append(", "); }
+    return e.length();
+  }
+
+  private void close(int p) {
+    e.alignRight(p, t.getWidth(col));
+    col++;
+  }
+
+  /** dollars(cents) returns the amount in dollars, with two decimal places */
+
+  static String dollars(long cents) {
+    long abs = Math.abs(cents);
+    return (cents < 0 ? "-" : "")+(abs / 100)+"."+(abs % 100 < 10 ? "0" : "")+(abs % 100);
+  }
+
+  /** pad(v, digits) returns v zero-padded to the number of digits given */
+
+  static String pad(long v, int digits) {
+    String str = Long.toString(v);
+    if (str.length() >= digits) { return str; }
+
+    char[] z = new char[digits - str.length()];
+    Arrays.fill(z, '0');
+    return new String(z) + str;
+  }
+}
@@ -0,0 +1,122 @@
+/**
+  * Table describes a table the generator writes rows for: its name, the
+  * columns written (serial IDs are left to the database), and the type of each
+  * column. The types let sinks that write binary formats encode values the way
+  * the database stores them.
+  *
+  * A table also carries the layout of its 'insert into' statement, so the SQL
+  * sink can keep the output of the generator as readable as it always was:
+  * + The number of tuples written on a line
+  * + The width each value is right-aligned to (0 for none)
+  * + The token written for a NULL in a column (NULL unless changed)
+  *
+  * For loading in parallel, a table knows the tables its foreign keys refer
+  * to, which gives its load stage: every table of a stage may be loaded at
+  * once, as soon as the stages before it are done. A table is 'ordered' if
+  * its rows have to be loaded in the order they were written, because the
+  * database numbers them (serial IDs) and other rows refer to those numbers.
+  *
+  * Date: 18 October 2026
+  */
+
+package src.out;
+
+import java.util.Arrays;
+
+public class Table {
+  // Type is an enumeration of the database types of columns
+  public static enum Type { TEXT, INT, BIGINT, FLOAT, DATE, BOOL };
+
+  // name is the name of the table, and cols its columns
+  // types holds the database type of every column
+  // perLine is the number of tuples written on a line of SQL
+  // width holds the width every value is right-aligned to in SQL
+  // nulls holds the SQL token written for a NULL in every column
+  private String name;
+  private String[] cols;
+  private Type[] types;
+  private int perLine;
+  private int[] width;
+  private String[] nulls;
+
+  // refs holds the tables this table's foreign keys refer to
+  // ordered toggles loading the rows in the order they were written
+  private Table[] refs;
+  private boolean ordered;
+
+  public Table(String nm, String[] c, Type... t) {
+    if (c.length != t.length)
+      throw new IllegalArgumentException("Table "+nm+" needs a type for every column");
+
+    name = nm;
+    cols = c;
+    types = t;
+    perLine = 1;
+    width = new int[c.length];
+    nulls = new String[c.length];
+    Arrays.fill(nulls, "NULL");
+    refs = new Table[0];
+    ordered = false;
+  }
+
+  /** layout(per, w...) sets the number of tuples written per line of SQL and
+    * the width each value of a tuple is right-aligned to. */
+
+  public Table layout(int per, int... w) {
+    perLine = per;
+    if (w.length > 0) { width = w; }
+    return this;
+  }
+
+  /** nullAs(col, tok) sets the SQL token written for a NULL in the column */
+
+  public Table nullAs(int col, String tok) {
+    nulls[col] = tok;
+    return this;
+  }
+
+  /** refs(t...) sets the tables this table's foreign keys refer to */
+
+  public Table refs(Table... t) {
+    refs = t;
+    return this;
+  }
+
+  /** ordered() marks the rows of this table as numbered by the database */
+
+  public Table ordered() {
+    ordered = true;
+    return this;
+  }
+
+  /** getStage() returns the load stage of this table: 0 if it refers to no
+    * other table, and otherwise one more than the latest stage it refers to. */
+
+  public int getStage() {
+    int st = 0;
+    for(Table r : refs) { st = Math.max(st, r.getStage()+1); }
+    return st;
+  }
+
+  public Table[] getRefs() { return refs; }
+  public boolean isOrdered() { return ordered; }
+  public String getName() { return name; }
+  public String[] getCols() { return cols; }
+  public int size() { return cols.length; }
+  public Type getType(int col) { return types[col]; }
+  public int getPerLine() { return perLine; }
+  public int getWidth(int col) { return width[col]; }
+  public String getNull(int col) { return nulls[col]; }
+
+  /** colList() returns the quoted, comma-separated list of the columns in
+    * parentheses, as used by both 'insert into' and 'copy' statements. */
+
+  public String colList() {
+    StringBuilder b = new StringBuilder("(");
+
+    for(int i=0; i<cols.length; i++)
+      b.append('"').append(cols[i]).append('"').append(i==cols.length-1 ? ")" : ",");
+
+    return b.toString();
+  }
+}
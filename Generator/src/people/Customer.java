@@ -51,21 +51,22 @@ public class Customer {
   private int house;
   private char sex;
 
-  /** Customer(nm,gen) generates a new Customer instance by
+  /** Customer(nm,gen,id) generates a new Customer instance by
     * assigning the name, gender, and location information provided as well as
     * generating a unique ssn and phone number using the Uniquifiers.
     *
     * @param nm The customer's first and last name
-    * @param gen The gender of the customer - 'F' or 'M' */
+    * @param gen The gender of the customer - 'F' or 'M'
+    * @param id The index of the customer, used to pick unique numbers */
 
-  public Customer(String nm, char gen) {
+  public Customer(String nm, char gen, int id) {
     Country c = Country.getCountry();
 
     name = nm.split(" ");
     sex = gen;
-    ssn = uSSN.get();
+    ssn = uSSN.get(id);
     email = genEmail();
-    phone = uPhone.get();
+    phone = uPhone.get(id);
     house = Helper.randomRange(100, 999);
 
     addr = new int[3];
@@ -123,7 +124,8 @@ public class Customer {
 
   /** load(fname) loads customer information from the given file, returning an
     * array containing the loaded customer information. A file of a specific
-    * format is described above regarding this function.
+    * format is described above regarding this function. (The names are read
+    * first, and the customers are then generated in parallel.)
     *
     * @param fname The name of the file to load customer info from
     * @return The array of customer information */
@@ -131,13 +133,13 @@ public class Customer {
   public static Customer[] load(String fname) throws IOException {
     BufferedReader r = new BufferedReader(new FileReader(fname));
     Customer[] cust = new Customer[Integer.parseInt(r.readLine())];
+    String[] dat = new String[cust.length];
 
-    for(int i=0; i<cust.length; i++) {
-      String dat = r.readLine();
-      cust[i] = new Customer(dat.substring(2), dat.charAt(0));
-    }
-
+    for(int i=0; i<dat.length; i++) { dat[i] = r.readLine(); }
     r.close();
+
+    Parallel.forEach(cust.length, "cust", i ->
+      cust[i] = new Customer(dat[i].substring(2), dat[i].charAt(0), i));
     return cust;
   }
 }
\ No newline at end of file
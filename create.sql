@@ -6,8 +6,11 @@ DROP TABLE IF EXISTS "Employee";
 DROP TABLE IF EXISTS "Account_Owner";
 DROP TABLE IF EXISTS "Account_Online";
 DROP TABLE IF EXISTS "Card";
+DROP TABLE IF EXISTS "Account_Shard";
 DROP TABLE IF EXISTS "Account";
 DROP TABLE IF EXISTS "Customer";
+DROP SEQUENCE IF EXISTS "Account_AID_Seq";
+DROP FUNCTION IF EXISTS notify_evict();
 DROP TYPE IF EXISTS acct_type;
 DROP TYPE IF EXISTS acct_int_comp;
 DROP TYPE IF EXISTS cust_gender;
@@ -83,6 +86,21 @@ CREATE TABLE "Account" (
   )
 );
 
+-- The App allocates new AIDs in blocks of 64 from this sequence (see the
+-- App's AidAllocator), permuting them so they look like the generated ones
+CREATE SEQUENCE "Account_AID_Seq" MINVALUE 0 START 0 INCREMENT 64;
+
+-- Hot accounts keep part of their balance in shards that credits are striped
+-- across; an account's balance is its Balance plus the sum of its shards (see
+-- the App's Shards)
+CREATE TABLE "Account_Shard" (
+  "AID" bigint not null,
+  "Shard" smallint not null,
+  "Balance" float not null default 0,
+  PRIMARY KEY ("AID","Shard"),
+  FOREIGN KEY ("AID") REFERENCES "Account"("AID")
+);
+
 CREATE TABLE "Account_Owner" (
   "CID" int not null,
   "AID" bigint not null,
@@ -149,4 +167,64 @@ CREATE TABLE "Transaction" (
   FOREIGN KEY ("AID") REFERENCES "Account"("AID"),
   FOREIGN KEY ("DID","AID") REFERENCES "Dispute"("DID","AID"),
   CHECK ("Amount" > 0)
-);
\ No newline at end of file
+);
+
+-- CUSTOMER LOOKUP
+-- Tellers find customers by name without regard to case (see Customers):
+-- exactly, by prefix, and (with pg_trgm) by similarity. text_pattern_ops
+-- lets LIKE 'abc%' use the indexes whatever the database's collation. The
+-- trigram index is skipped if pg_trgm isn't installed on the server.
+CREATE INDEX "Customer_Name_Idx" ON "Customer" (lower("Fname") text_pattern_ops, lower("Lname") text_pattern_ops);
+CREATE INDEX "Customer_Lname_Idx" ON "Customer" (lower("Lname") text_pattern_ops);
+DO $$
+BEGIN
+  CREATE EXTENSION IF NOT EXISTS pg_trgm;
+  CREATE INDEX "Customer_Trgm_Idx" ON "Customer" USING gin (lower("Fname"||' '||"Lname") gin_trgm_ops);
+EXCEPTION WHEN OTHERS THEN
+  RAISE NOTICE 'pg_trgm unavailable; fuzzy customer search is disabled';
+END
+$$;
+
+-- CACHE INVALIDATION
+-- Changes to the tables Apps cache are announced on channel 'cache_evict',
+-- once per statement, as '<table>:<keys>' - the AIDs (CIDs for Customer,
+-- 'AID:CID' pairs for Account_Owner) of the rows changed, comma-delimited, or
+-- '*' for statements changing more than 100 rows (bulk loads; rows are
+-- counted, up to 101, before any keys are gathered). Notifications are sent
+-- when the transaction commits, and identical ones in a transaction are sent
+-- once. Every statement's changed rows are in the transition table
+-- 'changed' (new rows for inserts and updates, old rows for deletes).
+CREATE FUNCTION notify_evict() RETURNS trigger AS $$
+DECLARE
+  n bigint;
+  keys text;
+BEGIN
+  SELECT count(*) INTO n FROM (SELECT 1 FROM changed LIMIT 101) AS c;
+  IF n = 0 THEN RETURN NULL; END IF;
+
+  IF n > 100 THEN
+    keys := '*';
+  ELSIF TG_TABLE_NAME = 'Customer' THEN
+    SELECT string_agg(DISTINCT "CID"::text, ',') INTO keys FROM changed;
+  ELSIF TG_TABLE_NAME = 'Account_Owner' THEN
+    SELECT string_agg("AID"::text||':'||"CID"::text, ',') INTO keys FROM changed;
+  ELSE
+    SELECT string_agg(DISTINCT "AID"::text, ',') INTO keys FROM changed;
+  END IF;
+  PERFORM pg_notify('cache_evict', TG_TABLE_NAME||':'||keys);
+  RETURN NULL;
+END
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER "Account_Ins" AFTER INSERT ON "Account" REFERENCING NEW TABLE AS changed FOR EACH STATEMENT EXECUTE PROCEDURE notify_evict();
+CREATE TRIGGER "Account_Upd" AFTER UPDATE ON "Account" REFERENCING NEW TABLE AS changed FOR EACH STATEMENT EXECUTE PROCEDURE notify_evict();
+CREATE TRIGGER "Account_Del" AFTER DELETE ON "Account" REFERENCING OLD TABLE AS changed FOR EACH STATEMENT EXECUTE PROCEDURE notify_evict();
+CREATE TRIGGER "Account_Shard_Upd" AFTER UPDATE ON "Account_Shard" REFERENCING NEW TABLE AS changed FOR EACH STATEMENT EXECUTE PROCEDURE notify_evict();
+CREATE TRIGGER "Account_Owner_Ins" AFTER INSERT ON "Account_Owner" REFERENCING NEW TABLE AS changed FOR EACH STATEMENT EXECUTE PROCEDURE notify_evict();
+CREATE TRIGGER "Account_Owner_Del" AFTER DELETE ON "Account_Owner" REFERENCING OLD TABLE AS changed FOR EACH STATEMENT EXECUTE PROCEDURE notify_evict();
+CREATE TRIGGER "Card_Ins" AFTER INSERT ON "Card" REFERENCING NEW TABLE AS changed FOR EACH STATEMENT EXECUTE PROCEDURE notify_evict();
+CREATE TRIGGER "Card_Upd" AFTER UPDATE ON "Card" REFERENCING NEW TABLE AS changed FOR EACH STATEMENT EXECUTE PROCEDURE notify_evict();
+CREATE TRIGGER "Card_Del" AFTER DELETE ON "Card" REFERENCING OLD TABLE AS changed FOR EACH STATEMENT EXECUTE PROCEDURE notify_evict();
+CREATE TRIGGER "Customer_Ins" AFTER INSERT ON "Customer" REFERENCING NEW TABLE AS changed FOR EACH STATEMENT EXECUTE PROCEDURE notify_evict();
+CREATE TRIGGER "Customer_Upd" AFTER UPDATE ON "Customer" REFERENCING NEW TABLE AS changed FOR EACH STATEMENT EXECUTE PROCEDURE notify_evict();
+CREATE TRIGGER "Customer_Del" AFTER DELETE ON "Customer" REFERENCING OLD TABLE AS changed FOR EACH STATEMENT EXECUTE PROCEDURE notify_evict();
@@ -0,0 +1,86 @@
+-- QUERY PLANS
+-- Shows the plan (and run time) of the query behind each App command, for
+-- comparing the schema of create.sql with the physical design of
+-- physical.sql. Run with psql on a loaded database, before and after
+-- migrating (reset > migrate):
+--
+--   psql -d DBMSTermProject -f explain.sql > plans-before.txt
+--   psql -d DBMSTermProject -f explain.sql > plans-after.txt
+--
+-- The sample account, customer, and dates are picked from the data, the same
+-- way both times. Postings are run and rolled back. plans-before.txt and
+-- plans-after.txt hold one such run, on generated data (600 accounts, 1.5
+-- million transactions) and PostgreSQL 16.
+\set ON_ERROR_STOP on
+
+SELECT O."AID" AS aid, O."CID" AS cid, U."Fname" AS fname, U."Lname" AS lname
+FROM "Account_Owner" O JOIN "Customer" U ON U."CID" = O."CID"
+ORDER BY O."AID" LIMIT 1 \gset
+SELECT max("Date") - 90 AS since, max("Date") AS until FROM "Transaction" \gset
+
+\echo '== account > get: summary (AccountCache.SUMMARY)'
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT "AID", "Type", "Date_Open", "Date_Close",
+  (A."Balance" + COALESCE((SELECT SUM(S."Balance") FROM "Account_Shard" S WHERE S."AID" = A."AID"), 0)) AS "Balance"
+FROM "Account" A WHERE "AID" = ANY(ARRAY[:aid]::bigint[]);
+
+\echo '== account > get: owners (AccountCache.OWNERS)'
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT W."AID", U."CID", U."Fname", U."Lname", U."SSN", U."Con_Phone"
+FROM "Account_Owner" W JOIN "Customer" U ON U."CID" = W."CID"
+WHERE W."AID" = ANY(ARRAY[:aid]::bigint[]) ORDER BY W."AID", U."CID";
+
+\echo '== account > get: cards (AccountCache.CARDS)'
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT C."AID", C."Number", C."CID", C."Status", C."PIN", C."Sec_Code", C."Exp_Date", U."Fname"
+FROM "Card" C JOIN "Customer" U ON U."CID" = C."CID"
+WHERE C."AID" = ANY(ARRAY[:aid]::bigint[]) ORDER BY C."AID", C."Exp_Date" DESC, C."Number";
+
+\echo '== account > seek: accounts of a customer (AccountCache.ACCOUNTS)'
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT "CID", "AID" FROM "Account_Owner" WHERE "CID" = ANY(ARRAY[:cid]::int[]) ORDER BY "CID", "AID";
+
+\echo '== customer > get (CID.WHERE)'
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT * FROM "Customer"
+WHERE ("CID" = ANY(ARRAY[:cid]::int[]) OR ("Fname", "Lname") IN
+  (SELECT * FROM unnest(ARRAY[:'fname']::text[], ARRAY[:'lname']::text[])));
+
+\echo '== customer > mod, account > new, seek: exact name (Customers.EXACT)'
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT "CID", "Fname", "Lname", "SSN", "Con_Phone", "DOB" FROM "Customer"
+WHERE lower("Fname") = lower(:'fname') AND lower("Lname") = lower(:'lname') ORDER BY "CID" LIMIT 25;
+
+\echo '== customer > mod, account > new, seek: name prefix (Customers.PREFIX_ONE)'
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT "CID", "Fname", "Lname", "SSN", "Con_Phone", "DOB" FROM "Customer" WHERE lower("Fname") LIKE lower(left(:'lname', 3))||'%'
+UNION SELECT "CID", "Fname", "Lname", "SSN", "Con_Phone", "DOB" FROM "Customer" WHERE lower("Lname") LIKE lower(left(:'lname', 3))||'%'
+ORDER BY "CID" LIMIT 25;
+
+\echo '== account > hist: first page of an account''s transactions (SubHistory)'
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT "TID", "Date", "Type", "Amount", "Rec_Route", "Rec_AID", "Desc", "isPending" FROM "Transaction"
+WHERE "AID" = :aid AND "Date" >= :'since' ORDER BY "Date" DESC, "TID" DESC LIMIT 20;
+
+\echo '== account > hist: a later page, by keyset (SubHistory)'
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT "TID", "Date", "Type", "Amount", "Rec_Route", "Rec_AID", "Desc", "isPending" FROM "Transaction"
+WHERE "AID" = :aid AND ("Date", "TID") < (:'until'::date, 9223372036854775807) ORDER BY "Date" DESC, "TID" DESC LIMIT 20;
+
+\echo '== Transactions in a date range (all accounts)'
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT count(*), sum("Amount") FROM "Transaction" WHERE "Date" BETWEEN :'since' AND :'until';
+
+\echo '== stress: transactions of an account (CmdStress)'
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT COUNT(*) FROM "Transaction" WHERE "AID" = ANY(ARRAY[:aid]::bigint[]);
+
+\echo '== account > mod > credit (Ledger.CREDIT), rolled back'
+BEGIN;
+EXPLAIN (ANALYZE, BUFFERS)
+WITH A AS (UPDATE "Account" SET "Balance" = "Balance" + 1
+  WHERE "AID" = :aid AND "Date_Close" IS NULL RETURNING "AID", "Balance"),
+T AS (INSERT INTO "Transaction"("AID","Type","Date","Amount","Rec_Route","Rec_AID","Desc","isPending")
+  SELECT "AID", 'CREDIT', CURRENT_DATE, 1, '000000000', '0', 'explain', true FROM A RETURNING "TID")
+SELECT A."Balance", T."TID" FROM A, T;
+ROLLBACK;
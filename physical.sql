@@ -0,0 +1,81 @@
+-- PHYSICAL DESIGN
+-- The physical design adds to the tables of create.sql: it's run after
+-- create.sql on an empty database (reset > physical), or on a database
+-- already loaded (reset > migrate), and can be run again without harm.
+-- Needs PostgreSQL 11 or later (partitioned keys and default partitions).
+--
+-- Transaction is range-partitioned by Date, one partition a year, so scans
+-- of a date range only read the years in it and old years can be detached
+-- or archived whole. The years made run from the earliest an account can
+-- open (the Generator opens accounts at most 52 years ago, as customers are
+-- 18 to 70), or the earliest date stored, to 4 years past today, or the
+-- latest date stored; dates outside them go to the default partition. Rows
+-- already in Transaction are moved across, keeping their TIDs, and the TID
+-- sequence is kept (a partition key must be part of the primary key, so
+-- it's ("TID","AID","Date")).
+DO $$
+DECLARE
+  y int;
+  lo int;
+  hi int;
+BEGIN
+  IF EXISTS (SELECT 1 FROM pg_partitioned_table WHERE partrelid = '"Transaction"'::regclass) THEN
+    RETURN;
+  END IF;
+
+  ALTER TABLE "Transaction" RENAME TO "Transaction_Heap";
+  ALTER TABLE "Transaction_Heap" RENAME CONSTRAINT "Transaction_pkey" TO "Transaction_Heap_pkey";
+
+  CREATE TABLE "Transaction" (
+    "TID" bigint not null default nextval('"Transaction_TID_seq"'),
+    "AID" bigint not null,
+    "Type" tran_type not null,
+    "Date" date not null,
+    "Desc" varchar(255),
+    "Amount" float not null,
+    "Rec_Route" varchar(25) not null,
+    "Rec_AID" varchar(25) not null,
+    "DID" int,
+    "isPending" boolean not null,
+    PRIMARY KEY ("TID","AID","Date"),
+    FOREIGN KEY ("AID") REFERENCES "Account"("AID"),
+    FOREIGN KEY ("DID","AID") REFERENCES "Dispute"("DID","AID"),
+    CHECK ("Amount" > 0)
+  ) PARTITION BY RANGE ("Date");
+
+  SELECT LEAST(min(extract(year FROM "Date"))::int, extract(year FROM now())::int - 52),
+    GREATEST(max(extract(year FROM "Date"))::int, extract(year FROM now())::int) + 4
+  INTO lo, hi FROM "Transaction_Heap";
+
+  FOR y IN lo..hi LOOP
+    EXECUTE format(
+      'CREATE TABLE %I PARTITION OF "Transaction" FOR VALUES FROM (%L) TO (%L)',
+      'Transaction_'||y, make_date(y, 1, 1), make_date(y+1, 1, 1)
+    );
+  END LOOP;
+  CREATE TABLE "Transaction_Default" PARTITION OF "Transaction" DEFAULT;
+
+  INSERT INTO "Transaction" SELECT * FROM "Transaction_Heap";
+  ALTER SEQUENCE "Transaction_TID_seq" OWNED BY "Transaction"."TID";
+  DROP TABLE "Transaction_Heap";
+END
+$$;
+
+-- INDEXES
+-- Indexes on the paths the App looks rows up by (create.sql only has keys):
+-- + Transaction by account, date, and TID (an account's history, paged by
+--   ("Date","TID") in account > hist)
+-- + Account_Owner by account (its key leads with CID, which covers lookups
+--   by customer already)
+-- + Card by account, newest first
+-- Transaction has no index by date: the partitions already narrow a date
+-- range to its years, and the rows aren't stored in date order (they're
+-- loaded account by account), so a BRIN index on "Date" wouldn't be used.
+-- Customer has none by name: it's small enough that the planner scans it.
+CREATE INDEX IF NOT EXISTS "Transaction_AID_Date_Idx" ON "Transaction" ("AID", "Date", "TID");
+CREATE INDEX IF NOT EXISTS "Account_Owner_AID_Idx" ON "Account_Owner" ("AID", "CID");
+CREATE INDEX IF NOT EXISTS "Card_AID_Exp_Idx" ON "Card" ("AID", "Exp_Date" DESC);
+
+ANALYZE "Transaction";
+ANALYZE "Account_Owner";
+ANALYZE "Card";